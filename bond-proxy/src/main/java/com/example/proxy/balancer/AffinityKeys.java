@@ -0,0 +1,80 @@
+package com.example.proxy.balancer;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.springframework.core.io.buffer.DataBuffer;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * 取出用來決定後端目標的親和 key。
+ * <p>
+ * 任務請求的 correlationId 為 {@code <SSE 連線 ID>-<任務索引>}，SSE 訂閱則直接帶 SSE 連線 ID，
+ * 去掉結尾的任務索引後兩者相同，同一條連線的任務與事件串流就會落在同一個 pod。
+ */
+public final class AffinityKeys {
+    private static final JsonFactory JSON = new JsonFactory();
+
+    private AffinityKeys() {
+    }
+
+    /**
+     * 只掃描 JSON 本文最外層的欄位，找到指定欄位即停止，不建立整棵樹；讀取不改變 buffer 的讀取位置。
+     */
+    public static String fromJsonBody(DataBuffer body, String field) {
+        if (body == null || body.readableByteCount() == 0) {
+            return null;
+        }
+        DataBuffer view = body.slice(body.readPosition(), body.readableByteCount());
+        try (InputStream in = view.asInputStream(); JsonParser parser = JSON.createParser(in)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return null;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.getCurrentName();
+                JsonToken value = parser.nextToken();
+                if (field.equals(name) && value == JsonToken.VALUE_STRING) {
+                    return parser.getText();
+                }
+                parser.skipChildren();
+            }
+        } catch (IOException e) {
+            // 本文不是 JSON 時視為沒有親和 key
+        }
+        return null;
+    }
+
+    /**
+     * 路徑以 prefix 開頭時取出其後的第一段，例如 {@code /api/tasks/<任務 ID>/events} 中的任務 ID。
+     */
+    public static String fromPath(String path, String prefix) {
+        if (prefix == null || prefix.isEmpty() || path == null || !path.startsWith(prefix)) {
+            return null;
+        }
+        int end = path.indexOf('/', prefix.length());
+        String segment = end < 0 ? path.substring(prefix.length()) : path.substring(prefix.length(), end);
+        return segment.isEmpty() ? null : segment;
+    }
+
+    /**
+     * 去掉結尾的 {@code -<數字>} 任務索引，與後端 TaskCorrelationId 的解析規則一致。
+     */
+    public static String normalize(String correlationId) {
+        if (correlationId == null || correlationId.isEmpty()) {
+            return null;
+        }
+        int dash = correlationId.lastIndexOf('-');
+        if (dash <= 0 || dash == correlationId.length() - 1) {
+            return correlationId;
+        }
+        for (int i = dash + 1; i < correlationId.length(); i++) {
+            char c = correlationId.charAt(i);
+            if (c < '0' || c > '9') {
+                return correlationId;
+            }
+        }
+        return correlationId.substring(0, dash);
+    }
+}
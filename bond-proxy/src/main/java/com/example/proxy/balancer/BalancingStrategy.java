@@ -0,0 +1,37 @@
+package com.example.proxy.balancer;
+
+import java.util.List;
+
+/**
+ * 沒有親和 key 的請求如何在路由的目標之間分配。每條路由各自建立一個實例，實作必須是執行緒安全的。
+ */
+public interface BalancingStrategy {
+
+    /**
+     * 依目標的有效權重選擇，沒有任何可用目標時回傳 null。
+     */
+    UpstreamTarget choose();
+
+    enum Type {
+        ROUND_ROBIN,
+        RANDOM,
+        SMOOTH_WEIGHTED_ROUND_ROBIN,
+        LEAST_CONNECTIONS,
+        PEAK_EWMA;
+
+        public BalancingStrategy create(List<UpstreamTarget> targets) {
+            switch (this) {
+                case RANDOM:
+                    return new RandomStrategy(targets);
+                case SMOOTH_WEIGHTED_ROUND_ROBIN:
+                    return new SmoothWeightedRoundRobinStrategy(targets);
+                case LEAST_CONNECTIONS:
+                    return new LeastConnectionsStrategy(targets);
+                case PEAK_EWMA:
+                    return new PeakEwmaStrategy(targets);
+                default:
+                    return new RoundRobinStrategy(targets);
+            }
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.proxy.balancer;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntPredicate;
+
+/**
+ * 以虛擬節點建立的一致性雜湊環，每個目標的虛擬節點數與權重成正比。
+ * <p>
+ * 建立後不可變；查詢時從 key 的雜湊位置順時針走訪，回傳第一個被接受的目標索引，
+ * 搭配負載上限即為 bounded-load 一致性雜湊：同一個 key 平時固定落在同一目標，
+ * 該目標超過上限時才溢出到環上的下一個目標。
+ */
+public final class ConsistentHashRing {
+    private final long[] points;
+    private final int[] owners;
+    private final int targetCount;
+
+    public ConsistentHashRing(List<UpstreamTarget> targets, int virtualNodesPerWeight) {
+        int total = 0;
+        for (UpstreamTarget target : targets) {
+            total += target.getWeight() * virtualNodesPerWeight;
+        }
+        long[] hashes = new long[total];
+        int[] indexes = new int[total];
+        int n = 0;
+        for (int i = 0; i < targets.size(); i++) {
+            String base = targets.get(i).getUri().toString() + "#";
+            int nodes = targets.get(i).getWeight() * virtualNodesPerWeight;
+            for (int v = 0; v < nodes; v++) {
+                hashes[n] = hash(base + v);
+                indexes[n] = i;
+                n++;
+            }
+        }
+        // 依雜湊值排序，owners 跟著同步調整
+        Integer[] order = new Integer[total];
+        for (int i = 0; i < total; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(hashes[a], hashes[b]));
+        this.points = new long[total];
+        this.owners = new int[total];
+        for (int i = 0; i < total; i++) {
+            points[i] = hashes[order[i]];
+            owners[i] = indexes[order[i]];
+        }
+        this.targetCount = targets.size();
+    }
+
+    /**
+     * 從 key 的位置順時針找第一個 accept 的目標；所有目標都不接受時回傳 key 原本對應的目標。
+     */
+    public int select(String key, IntPredicate accept) {
+        int position = Arrays.binarySearch(points, hash(key));
+        if (position < 0) {
+            position = -position - 1;
+        }
+        int primary = owners[position % points.length];
+        boolean[] visited = new boolean[targetCount];
+        int distinct = 0;
+        for (int i = 0; i < points.length && distinct < targetCount; i++) {
+            int owner = owners[(position + i) % points.length];
+            if (visited[owner]) {
+                continue;
+            }
+            if (accept.test(owner)) {
+                return owner;
+            }
+            visited[owner] = true;
+            distinct++;
+        }
+        return primary;
+    }
+
+    // FNV-1a 再經 murmur3 的 fmix64 打散，讓相近的 key 也能均勻分布在環上
+    static long hash(String key) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            h ^= key.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.proxy.balancer;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Peak-EWMA：成本為 回應延遲 EWMA x (進行中請求數 + 1) / 有效權重，以隨機兩選一 (power of two choices)
+ * 挑成本較低者。延遲只量到回應標頭送出為止，長時間的 SSE 串流不會被當成慢回應。
+ */
+class PeakEwmaStrategy implements BalancingStrategy {
+    private final List<UpstreamTarget> targets;
+
+    PeakEwmaStrategy(List<UpstreamTarget> targets) {
+        this.targets = targets;
+    }
+
+    @Override
+    public UpstreamTarget choose() {
+        long now = System.nanoTime();
+        int size = targets.size();
+        if (size == 1) {
+            return cost(targets.get(0), now) < Double.MAX_VALUE ? targets.get(0) : null;
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int a = random.nextInt(size);
+        int b = random.nextInt(size - 1);
+        if (b >= a) {
+            b++;
+        }
+        UpstreamTarget first = targets.get(a);
+        UpstreamTarget second = targets.get(b);
+        double firstCost = cost(first, now);
+        double secondCost = cost(second, now);
+        if (firstCost < Double.MAX_VALUE || secondCost < Double.MAX_VALUE) {
+            return firstCost <= secondCost ? first : second;
+        }
+        // 抽到的兩個都不可用時，改從全部目標中找成本最低者
+        UpstreamTarget best = null;
+        double bestCost = Double.MAX_VALUE;
+        for (UpstreamTarget target : targets) {
+            double cost = cost(target, now);
+            if (cost < bestCost) {
+                best = target;
+                bestCost = cost;
+            }
+        }
+        return best;
+    }
+
+    private static double cost(UpstreamTarget target, long now) {
+        double effective = target.effectiveWeight(now);
+        if (effective <= 0) {
+            return Double.MAX_VALUE;
+        }
+        // 尚無樣本的目標延遲視為 0，會先分到請求以取得樣本
+        return (target.getEwmaNanos() + 1) * (target.getActive() + 1) / effective;
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.proxy.balancer;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 依權重隨機選擇，不可用或慢啟動未被接受時重抽。
+ */
+class RandomStrategy implements BalancingStrategy {
+    private final List<UpstreamTarget> targets;
+    private final int[] schedule;
+
+    RandomStrategy(List<UpstreamTarget> targets) {
+        this.targets = targets;
+        this.schedule = RoundRobinStrategy.weightedSchedule(targets);
+    }
+
+    @Override
+    public UpstreamTarget choose() {
+        long now = System.nanoTime();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < schedule.length; i++) {
+            UpstreamTarget target = targets.get(schedule[random.nextInt(schedule.length)]);
+            if (RoundRobinStrategy.admit(target, now)) {
+                return target;
+            }
+        }
+        return null;
+    }
+}
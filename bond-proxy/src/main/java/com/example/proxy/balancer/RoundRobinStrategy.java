@@ -0,0 +1,53 @@
+package com.example.proxy.balancer;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 依權重展開的輪詢，例如權重 2、1 展開為 [0, 0, 1]。
+ * 不可用的目標直接略過，慢啟動中的目標依有效權重比例機率性接受。
+ */
+class RoundRobinStrategy implements BalancingStrategy {
+    private final List<UpstreamTarget> targets;
+    private final int[] schedule;
+    private final AtomicInteger counter = new AtomicInteger(0);
+
+    RoundRobinStrategy(List<UpstreamTarget> targets) {
+        this.targets = targets;
+        this.schedule = weightedSchedule(targets);
+    }
+
+    @Override
+    public UpstreamTarget choose() {
+        long now = System.nanoTime();
+        for (int i = 0; i < schedule.length; i++) {
+            UpstreamTarget target = targets.get(schedule[Math.floorMod(counter.getAndIncrement(), schedule.length)]);
+            if (admit(target, now)) {
+                return target;
+            }
+        }
+        return null;
+    }
+
+    static boolean admit(UpstreamTarget target, long now) {
+        double effective = target.effectiveWeight(now);
+        return effective >= target.getWeight()
+                || (effective > 0 && ThreadLocalRandom.current().nextDouble() * target.getWeight() < effective);
+    }
+
+    static int[] weightedSchedule(List<UpstreamTarget> targets) {
+        int total = 0;
+        for (UpstreamTarget target : targets) {
+            total += target.getWeight();
+        }
+        int[] schedule = new int[total];
+        int n = 0;
+        for (int i = 0; i < targets.size(); i++) {
+            for (int w = 0; w < targets.get(i).getWeight(); w++) {
+                schedule[n++] = i;
+            }
+        }
+        return schedule;
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.proxy.balancer;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import javax.annotation.PreDestroy;
+import java.net.URI;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 對各路由的目標定期發送健康檢查請求 (GET healthCheckPath)，2xx 視為成功。
+ * <p>
+ * 排程執行緒只負責發出請求，結果在回應到達時以非同步方式更新目標狀態。路由重新整理產生新的目標池時，
+ * 同一路由舊池的排程會被取消。
+ */
+@Component
+@Slf4j
+public class UpstreamHealthChecker {
+    private final WebClient webClient = WebClient.create();
+    private final Map<String, ScheduledFuture<?>> schedules = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "upstream-health");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public void watch(UpstreamPool pool) {
+        UpstreamSettings settings = pool.getSettings();
+        ScheduledFuture<?> previous;
+        if (!settings.isHealthCheckEnabled()) {
+            previous = schedules.remove(pool.getRouteId());
+        } else {
+            long interval = Math.max(100, settings.getHealthCheckIntervalMs());
+            previous = schedules.put(pool.getRouteId(),
+                    scheduler.scheduleWithFixedDelay(() -> probeAll(pool), 0, interval, TimeUnit.MILLISECONDS));
+        }
+        if (previous != null) {
+            previous.cancel(false);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdownNow();
+    }
+
+    private void probeAll(UpstreamPool pool) {
+        for (UpstreamTarget target : pool.getTargets()) {
+            probe(pool, target);
+        }
+    }
+
+    private void probe(UpstreamPool pool, UpstreamTarget target) {
+        UpstreamSettings settings = pool.getSettings();
+        URI uri = target.getUri().resolve(settings.getHealthCheckPath());
+        webClient.get().uri(uri)
+                .exchange()
+                .flatMap(response -> response.releaseBody()
+                        .thenReturn(response.rawStatusCode() >= 200 && response.rawStatusCode() < 300))
+                .timeout(Duration.ofMillis(settings.getHealthCheckTimeoutMs()))
+                .onErrorReturn(false)
+                .subscribe(ok -> {
+                    boolean wasHealthy = target.isHealthy();
+                    target.recordProbe(ok, System.nanoTime(),
+                            settings.getHealthyThreshold(), settings.getUnhealthyThreshold());
+                    if (wasHealthy != target.isHealthy()) {
+                        log.warn("Target {} on route {} is now {}", target.getUri(), pool.getRouteId(),
+                                target.isHealthy() ? "healthy (slow start)" : "unhealthy");
+                    }
+                });
+    }
+}
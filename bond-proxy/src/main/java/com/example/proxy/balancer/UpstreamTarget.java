@@ -0,0 +1,174 @@
+package com.example.proxy.balancer;
+
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 路由上的一個後端目標，以及代理目前轉送給它、尚未結束的請求數 (包含開啟中的 SSE 串流)。
+ * <p>
+ * 回應延遲以 peak-EWMA 追蹤：比目前平均慢的樣本直接取代平均值，較快的樣本依距離上次更新的時間衰減合併，
+ * 因此目標變慢時會立刻反映，恢復後則在 decay 時間內逐漸回落。
+ * <p>
+ * 目標在主動健康檢查失敗或被動剔除期間不可用 (有效權重為 0)；恢復後進入慢啟動，有效權重逐漸升回設定值。
+ */
+public class UpstreamTarget {
+    private static final double SLOW_START_MIN_FACTOR = 0.1;
+
+    private final URI uri;
+    private final int weight;
+    private final long decayNanos;
+    private final long slowStartNanos;
+    private final AtomicInteger active = new AtomicInteger();
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    private double ewmaNanos;
+    private long lastSampleNanos;
+
+    // 健康狀態：由健康檢查執行緒與請求完成的回呼更新，轉換都在 synchronized 內進行
+    private volatile boolean healthy = true;
+    private volatile long ejectedUntilNanos;
+    private volatile long warmingSinceNanos;
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private int ejections;
+    private int probeSuccesses;
+    private int probeFailures;
+
+    public UpstreamTarget(URI uri, int weight, UpstreamSettings settings) {
+        this.uri = uri;
+        // 未設定權重 (0) 視為 1
+        this.weight = Math.max(1, weight);
+        this.decayNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, settings.getEwmaDecayMs()));
+        this.slowStartNanos = TimeUnit.MILLISECONDS.toNanos(settings.getSlowStartMs());
+        // nanoTime 可能為負值，以建立時間作為「剔除已結束」的起點
+        this.ejectedUntilNanos = System.nanoTime();
+    }
+
+    public URI getUri() {
+        return uri;
+    }
+
+    public int getWeight() {
+        return weight;
+    }
+
+    public int getActive() {
+        return active.get();
+    }
+
+    public long getRequests() {
+        return requests.sum();
+    }
+
+    public long getFailures() {
+        return failures.sum();
+    }
+
+    public void acquire() {
+        active.incrementAndGet();
+        requests.increment();
+    }
+
+    public void release() {
+        active.decrementAndGet();
+    }
+
+    public synchronized void recordLatency(long latencyNanos) {
+        long now = System.nanoTime();
+        if (lastSampleNanos == 0 || latencyNanos > ewmaNanos) {
+            ewmaNanos = latencyNanos;
+        } else {
+            double w = Math.exp(-(double) (now - lastSampleNanos) / decayNanos);
+            ewmaNanos = ewmaNanos * w + latencyNanos * (1 - w);
+        }
+        lastSampleNanos = now;
+    }
+
+    public synchronized double getEwmaNanos() {
+        return ewmaNanos;
+    }
+
+    /**
+     * 目前的有效權重：不可用時為 0，慢啟動期間由設定權重的 10% 線性升回。
+     */
+    public double effectiveWeight(long now) {
+        if (!healthy || now - ejectedUntilNanos < 0) {
+            return 0;
+        }
+        long warmingSince = warmingSinceNanos;
+        if (warmingSince != 0 && slowStartNanos > 0) {
+            long elapsed = now - warmingSince;
+            if (elapsed < slowStartNanos) {
+                return weight * Math.max(SLOW_START_MIN_FACTOR, (double) elapsed / slowStartNanos);
+            }
+        }
+        return weight;
+    }
+
+    public boolean isAvailable(long now) {
+        return healthy && now - ejectedUntilNanos >= 0;
+    }
+
+    public boolean isHealthy() {
+        return healthy;
+    }
+
+    public long getEjectedForNanos(long now) {
+        return Math.max(0, ejectedUntilNanos - now);
+    }
+
+    public void recordSuccess() {
+        if (consecutiveFailures.get() != 0) {
+            consecutiveFailures.set(0);
+        }
+    }
+
+    /**
+     * 記錄一次連線失敗、502 或 504，回傳連續失敗次數。
+     */
+    public int recordFailure() {
+        failures.increment();
+        return consecutiveFailures.incrementAndGet();
+    }
+
+    /**
+     * 剔除一段時間，重複被剔除時時間加倍；剔除結束後以慢啟動恢復。
+     */
+    public synchronized void eject(long now, long baseNanos, long maxNanos) {
+        if (now - ejectedUntilNanos < 0) {
+            return;
+        }
+        if (ejections > 0 && now - ejectedUntilNanos > maxNanos) {
+            // 上次剔除結束後已穩定一段時間，重新從基本剔除時間算起
+            ejections = 0;
+        }
+        long duration = Math.min(maxNanos, baseNanos << Math.min(ejections, 16));
+        ejections++;
+        ejectedUntilNanos = now + duration;
+        warmingSinceNanos = ejectedUntilNanos;
+        consecutiveFailures.set(0);
+    }
+
+    /**
+     * 記錄一次主動健康檢查結果，連續成功/失敗達門檻才切換狀態。
+     */
+    public synchronized void recordProbe(boolean ok, long now, int healthyThreshold, int unhealthyThreshold) {
+        if (ok) {
+            probeFailures = 0;
+            probeSuccesses++;
+            if (!healthy && probeSuccesses >= healthyThreshold) {
+                healthy = true;
+                warmingSinceNanos = now;
+                ejections = 0;
+            }
+        } else {
+            probeSuccesses = 0;
+            probeFailures++;
+            if (healthy && probeFailures >= unhealthyThreshold) {
+                healthy = false;
+            }
+        }
+    }
+}
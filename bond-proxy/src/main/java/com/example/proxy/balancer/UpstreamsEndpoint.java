@@ -0,0 +1,49 @@
+package com.example.proxy.balancer;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * /actuator/upstreams：各路由使用的策略，以及每個目標的權重、健康/剔除狀態、進行中請求數、累計請求與失敗數和延遲 EWMA。
+ */
+@Component
+@Endpoint(id = "upstreams")
+@RequiredArgsConstructor
+public class UpstreamsEndpoint {
+    private final UpstreamRegistry registry;
+
+    @ReadOperation
+    public Map<String, Object> upstreams() {
+        Map<String, Object> routes = new LinkedHashMap<>();
+        long now = System.nanoTime();
+        for (UpstreamPool pool : registry.getPools()) {
+            List<Map<String, Object>> targets = new ArrayList<>();
+            for (UpstreamTarget target : pool.getTargets()) {
+                Map<String, Object> view = new LinkedHashMap<>();
+                view.put("uri", target.getUri().toString());
+                view.put("weight", target.getWeight());
+                view.put("effectiveWeight", target.effectiveWeight(now));
+                view.put("healthy", target.isHealthy());
+                view.put("ejectedForMillis", TimeUnit.NANOSECONDS.toMillis(target.getEjectedForNanos(now)));
+                view.put("active", target.getActive());
+                view.put("requests", target.getRequests());
+                view.put("failures", target.getFailures());
+                view.put("ewmaMillis", target.getEwmaNanos() / TimeUnit.MILLISECONDS.toNanos(1));
+                targets.add(view);
+            }
+            Map<String, Object> route = new LinkedHashMap<>();
+            route.put("strategy", pool.getStrategyType());
+            route.put("targets", targets);
+            routes.put(pool.getRouteId(), route);
+        }
+        return routes;
+    }
+}
@@ -1,61 +1,244 @@
 package com.example.proxy.config;
 
+import com.example.proxy.balancer.AffinityKeys;
+import com.example.proxy.balancer.BalancingStrategy;
+import com.example.proxy.balancer.UpstreamHealthChecker;
+import com.example.proxy.balancer.UpstreamPool;
+import com.example.proxy.balancer.UpstreamRegistry;
+import com.example.proxy.balancer.UpstreamSettings;
+import com.example.proxy.balancer.UpstreamTarget;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.cloud.gateway.filter.GatewayFilter;
 import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.OrderedGatewayFilter;
+import org.springframework.cloud.gateway.filter.RouteToRequestUrlFilter;
 import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
+import org.springframework.cloud.gateway.support.HasRouteId;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
 import org.springframework.stereotype.Component;
 import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.util.UriComponentsBuilder;
 import reactor.core.publisher.Mono;
+import reactor.netty.Connection;
 
+import java.net.ConnectException;
 import java.net.URI;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
-import java.util.concurrent.ThreadLocalRandom;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.CACHED_REQUEST_BODY_ATTR;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.CLIENT_RESPONSE_CONN_ATTR;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_REQUEST_URL_ATTR;
+
+/**
+ * 在 gateway 內選擇後端目標。
+ * <p>
+ * 請求帶有 correlationId (header、query、任務查詢路徑或 JSON 本文) 時以一致性雜湊選擇目標，讓同一條 SSE 連線的
+ * 任務請求與事件串流落在同一個 pod；每個目標的進行中請求數不超過平均負載的 loadFactor 倍 (依權重分配)，
+ * 超過時溢出到環上的下一個目標。沒有 correlationId 的請求交給路由設定的策略 (見 {@link BalancingStrategy})。
+ * <p>
+ * 健康檢查失敗或連續連線失敗/502/504 被剔除的目標不會被選到；連線失敗時改送其他目標 (見 {@link UpstreamSettings})。
+ * 任務查詢 (affinityPathPrefix 下的 GET) 在選到的目標回應 404 時改問其他目標，見 {@link #fallbackOnNotFound}。
+ * <p>
+ * 503 與帶 Retry-After 的回應是後端主動限流，不計入失敗；其他 5xx 是應用程式錯誤，目標本身仍可服務。
+ */
 @Component
 @Slf4j
 public class LoadBalancerConfig extends AbstractGatewayFilterFactory<LoadBalancerConfig.Config> {
 
-    private final AtomicInteger counter = new AtomicInteger(0);
+    // 必須在 RouteToRequestUrlFilter 算出請求 URL 之後、lb:// 的負載平衡 filter 之前執行
+    private static final int FILTER_ORDER = RouteToRequestUrlFilter.ROUTE_TO_URL_FILTER_ORDER + 1;
+
+    private final UpstreamRegistry registry;
+    private final UpstreamHealthChecker healthChecker;
 
-    public LoadBalancerConfig() {
+    public LoadBalancerConfig(UpstreamRegistry registry, UpstreamHealthChecker healthChecker) {
         super(Config.class);
+        this.registry = registry;
+        this.healthChecker = healthChecker;
     }
 
     @Override
     public GatewayFilter apply(final Config config) {
-        return new GatewayFilter() {
+        final List<UpstreamTarget> targets = new ArrayList<>();
+        for (Target target : config.getTargets()) {
+            targets.add(new UpstreamTarget(URI.create(target.getUri()), target.getWeight(), config));
+        }
+        String routeId = config.getRouteId() != null ? config.getRouteId() : "route-" + System.identityHashCode(config);
+        final UpstreamPool pool = new UpstreamPool(routeId, targets, config.strategyType(), config);
+        registry.register(pool);
+        healthChecker.watch(pool);
+
+        GatewayFilter filter = new GatewayFilter() {
             @Override
             public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
                 ServerHttpRequest request = exchange.getRequest();
-                String path = request.getURI().getPath();
-                String method = request.getMethod().name();
-
-                log.debug("Received request: {} {}", method, path);
-
-                // 隨機選擇目標或使用輪詢
-                Target target;
-                if (config.isRandomSelection()) {
-                    // 隨機選擇
-                    int randomIndex = ThreadLocalRandom.current().nextInt(config.getTargets().size());
-                    target = config.getTargets().get(randomIndex);
-                    log.debug("Random selected target: {}", target.getUri());
-                } else {
-                    // 輪詢
-                    target = config.getTargets().get(counter.getAndIncrement() % config.getTargets().size());
-                    log.debug("Round-robin selected target: {}", target.getUri());
+                log.debug("Received request: {} {}", request.getMethod(), request.getURI().getPath());
+
+                if (config.isAffinity()) {
+                    // 任務狀態與歷史查詢只在持有該任務事件日誌的 pod 上有資料
+                    String taskId = AffinityKeys.fromPath(request.getURI().getPath(), config.getAffinityPathPrefix());
+                    boolean fallback = config.isNotFoundFallback() && taskId != null && request.getMethod() == HttpMethod.GET;
+                    String key = request.getHeaders().getFirst(config.getAffinityHeader());
+                    if (key == null) {
+                        key = request.getQueryParams().getFirst(config.getAffinityField());
+                    }
+                    if (key == null) {
+                        key = taskId;
+                    }
+                    if (key != null) {
+                        return route(exchange, chain, pool, selectByKey(AffinityKeys.normalize(key)), fallback);
+                    }
+                    if (hasJsonBody(request)) {
+                        // 快取本文後才能讀取 correlationId，之後的 filter 仍可再次讀取同一份本文
+                        return ServerWebExchangeUtils.cacheRequestBody(exchange, cachedRequest -> {
+                            DataBuffer body = exchange.getAttribute(CACHED_REQUEST_BODY_ATTR);
+                            String bodyKey = AffinityKeys.normalize(
+                                    AffinityKeys.fromJsonBody(body, config.getAffinityField()));
+                            ServerWebExchange cachedExchange = exchange.mutate().request(cachedRequest).build();
+                            return route(cachedExchange, chain, pool, bodyKey != null ? selectByKey(bodyKey) : select(), false);
+                        });
+                    }
                 }
+                return route(exchange, chain, pool, select(), false);
+            }
+
+            private UpstreamTarget selectByKey(String key) {
+                UpstreamTarget target = pool.selectByKey(key);
+                log.debug("Affinity key {} selected target: {}", key, target.getUri());
+                return target;
+            }
 
-                String targetUri = target.getUri();
-                URI uri = URI.create(targetUri + path);
-                ServerHttpRequest newRequest = exchange.getRequest().mutate().uri(uri).build();
-                return chain.filter(exchange.mutate().request(newRequest).build());
+            private UpstreamTarget select() {
+                UpstreamTarget target = pool.select();
+                log.debug("{} selected target: {}", pool.getStrategyType(), target.getUri());
+                return target;
             }
         };
+        return new OrderedGatewayFilter(filter, FILTER_ORDER);
+    }
+
+    private static Mono<Void> route(ServerWebExchange exchange, GatewayFilterChain chain, UpstreamPool pool,
+                                    UpstreamTarget target, boolean notFoundFallback) {
+        // 回應標頭送出時記錄延遲與結果；重試會更新實際回應的目標
+        AtomicReference<UpstreamTarget> responder = new AtomicReference<>(target);
+        AtomicBoolean connectFailed = new AtomicBoolean();
+        long start = System.nanoTime();
+        exchange.getResponse().beforeCommit(() -> {
+            if (connectFailed.get()) {
+                // 最後一個目標也連線失敗，已在錯誤處理時記錄，不再把錯誤回應記成該目標的結果
+                return Mono.empty();
+            }
+            UpstreamTarget current = responder.get();
+            current.recordLatency(System.nanoTime() - start);
+            ServerHttpResponse response = exchange.getResponse();
+            HttpStatus status = response.getStatusCode();
+            if (status == HttpStatus.SERVICE_UNAVAILABLE || response.getHeaders().containsKey(HttpHeaders.RETRY_AFTER)) {
+                // 後端主動限流或拒絕連線 (例如 SSE 連線數達上限)，目標本身是健康的，不計入成功也不計入失敗
+                return Mono.empty();
+            }
+            if (status == HttpStatus.BAD_GATEWAY || status == HttpStatus.GATEWAY_TIMEOUT) {
+                pool.recordFailure(current);
+            } else {
+                pool.recordSuccess(current);
+            }
+            return Mono.empty();
+        });
+        Mono<Void> forwarded = forward(exchange, chain, pool, target, responder, connectFailed,
+                pool.getSettings().getMaxRetries());
+        if (!notFoundFallback) {
+            return forwarded;
+        }
+        Set<UpstreamTarget> tried = new HashSet<>();
+        return forwarded.then(Mono.defer(() -> fallbackOnNotFound(exchange, chain, pool, responder, connectFailed, tried)));
+    }
+
+    /**
+     * 任務查詢被送到沒有該任務事件的 pod 時 (例如訂閱時因負載上限溢出到環上的其他目標)，依序改問其他可用目標，
+     * 都回應 404 才把 404 交給客戶端。此時只收到回應標頭，本文尚未寫出，做法與內建的 Retry filter 相同：
+     * 釋放後端連線、清除回應標頭後重新轉送。
+     */
+    private static Mono<Void> fallbackOnNotFound(ServerWebExchange exchange, GatewayFilterChain chain, UpstreamPool pool,
+                                                 AtomicReference<UpstreamTarget> responder, AtomicBoolean connectFailed,
+                                                 Set<UpstreamTarget> tried) {
+        tried.add(responder.get());
+        if (exchange.getResponse().getStatusCode() != HttpStatus.NOT_FOUND || exchange.getResponse().isCommitted()) {
+            return Mono.empty();
+        }
+        UpstreamTarget next = pool.selectExcluding(tried);
+        if (next == null) {
+            return Mono.empty();
+        }
+        log.debug("{} not found on {}, trying {}", exchange.getRequest().getURI().getPath(),
+                responder.get().getUri(), next.getUri());
+        Connection connection = exchange.getAttribute(CLIENT_RESPONSE_CONN_ATTR);
+        if (connection != null) {
+            connection.dispose();
+            exchange.getAttributes().remove(CLIENT_RESPONSE_CONN_ATTR);
+        }
+        ServerWebExchangeUtils.reset(exchange);
+        responder.set(next);
+        return forward(exchange, chain, pool, next, responder, connectFailed, pool.getSettings().getMaxRetries())
+                .then(Mono.defer(() -> fallbackOnNotFound(exchange, chain, pool, responder, connectFailed, tried)));
+    }
+
+    private static Mono<Void> forward(ServerWebExchange exchange, GatewayFilterChain chain, UpstreamPool pool,
+                                      UpstreamTarget target, AtomicReference<UpstreamTarget> responder,
+                                      AtomicBoolean connectFailed, int retriesLeft) {
+        URI requestUrl = exchange.getAttribute(GATEWAY_REQUEST_URL_ATTR);
+        if (requestUrl == null) {
+            requestUrl = exchange.getRequest().getURI();
+        }
+        boolean encoded = ServerWebExchangeUtils.containsEncodedParts(requestUrl);
+        URI uri = UriComponentsBuilder.fromUri(requestUrl).uri(target.getUri()).build(encoded).toUri();
+        exchange.getAttributes().put(GATEWAY_REQUEST_URL_ATTR, uri);
+
+        // 進行中的請求數包含開啟中的 SSE 串流，直到回應結束才釋放
+        target.acquire();
+        return chain.filter(exchange)
+                .doFinally(signal -> target.release())
+                .onErrorResume(e -> isConnectFailure(e) && !exchange.getResponse().isCommitted(), e -> {
+                    pool.recordFailure(target);
+                    // 連線失敗代表請求沒有送到後端，改送其他目標是安全的
+                    UpstreamTarget next = retriesLeft > 0 ? pool.selectForRetry(target) : null;
+                    if (next == null) {
+                        connectFailed.set(true);
+                        return Mono.error(e);
+                    }
+                    log.warn("Connect to {} failed ({}), retrying on {}", target.getUri(), e.getMessage(), next.getUri());
+                    ServerWebExchangeUtils.reset(exchange);
+                    responder.set(next);
+                    return forward(exchange, chain, pool, next, responder, connectFailed, retriesLeft - 1);
+                });
+    }
+
+    private static boolean isConnectFailure(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConnectException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean hasJsonBody(ServerHttpRequest request) {
+        MediaType contentType = request.getHeaders().getContentType();
+        return request.getMethod() == HttpMethod.POST
+                && contentType != null && MediaType.APPLICATION_JSON.isCompatibleWith(contentType);
     }
 
     @Override
@@ -64,14 +247,29 @@ public class LoadBalancerConfig extends AbstractGatewayFilterFactory<LoadBalance
     }
 
     @Data
-    public static class Config {
-        private boolean randomSelection = false; // 預設使用輪詢
+    @EqualsAndHashCode(callSuper = true)
+    public static class Config extends UpstreamSettings implements HasRouteId {
+        private String routeId;
+        private boolean randomSelection = false; // 未指定 strategy 時：true 為隨機，false 為輪詢
+        private BalancingStrategy.Type strategy; // 沒有 correlationId 的請求使用的策略
         private List<Target> targets;
+        private boolean affinity = true; // 依 correlationId 一致性雜湊選擇目標
+        private String affinityHeader = "X-Correlation-Id";
+        private String affinityField = "correlationId"; // query 參數與 JSON 本文中的欄位名稱
+        private String affinityPathPrefix = "/api/tasks/"; // 路徑中此前綴後的第一段為任務 ID
+        private boolean notFoundFallback = true; // 此前綴下的 GET 在選到的目標回應 404 時改問其他目標
+
+        BalancingStrategy.Type strategyType() {
+            if (strategy != null) {
+                return strategy;
+            }
+            return randomSelection ? BalancingStrategy.Type.RANDOM : BalancingStrategy.Type.ROUND_ROBIN;
+        }
     }
 
     @Data
     public static class Target {
         private String uri;
-        private int weight; // 保留權重欄位供未來擴展
+        private int weight = 1; // 權重影響雜湊環上的虛擬節點數、負載上限與各策略的分配比例
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,104 @@
+package com.example.proxy.config;
+
+import com.example.proxy.ratelimit.RateLimiter;
+import com.example.proxy.ratelimit.RateLimiterRegistry;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 在 gateway 內依客戶端限流，不需要 Redis。
+ * <p>
+ * 每條規則以 HTTP 方法與路徑比對請求 (第一條符合的規則生效)，每個客戶端在規則內各有一個無鎖的 token bucket
+ * (見 {@link RateLimiter})；沒有 token 時立即回應 429 並以 Retry-After 告知下一個 token 的時間，請求不會送到後端。
+ * 規則以名稱登記在 {@link RateLimiterRegistry}，SSE 多工訂閱以 app.sse-mux.rate-limit 引用同一條規則。
+ * 應放在 LoadBalancerConfig 之前，被拒絕的請求不佔用後端目標的進行中請求數。
+ */
+@Component
+@Slf4j
+public class RateLimitConfig extends AbstractGatewayFilterFactory<RateLimitConfig.Config> {
+    private final RateLimiterRegistry registry;
+
+    public RateLimitConfig(RateLimiterRegistry registry) {
+        super(Config.class);
+        this.registry = registry;
+    }
+
+    @Override
+    public GatewayFilter apply(Config config) {
+        final List<CompiledRule> rules = new ArrayList<>();
+        PathPatternParser parser = new PathPatternParser();
+        for (Rule rule : config.getRules()) {
+            RateLimiter limiter = registry.register(rule.getName(), rule.getPermitsPerSecond(), rule.getBurst());
+            rules.add(new CompiledRule(rule.getMethod(), parser.parse(rule.getPath()), limiter));
+        }
+
+        return (exchange, chain) -> {
+            ServerHttpRequest request = exchange.getRequest();
+            for (CompiledRule rule : rules) {
+                if (!rule.matches(request)) {
+                    continue;
+                }
+                String clientKey = registry.clientKey(request);
+                long waitNanos = rule.limiter.tryAcquire(clientKey);
+                if (waitNanos > 0) {
+                    log.debug("Rate limit {} rejected {} {} from {}", rule.limiter.getName(), request.getMethod(),
+                            request.getURI().getPath(), clientKey);
+                    return reject(exchange.getResponse(), waitNanos);
+                }
+                break;
+            }
+            return chain.filter(exchange);
+        };
+    }
+
+    private static Mono<Void> reject(ServerHttpResponse response, long waitNanos) {
+        response.setStatusCode(HttpStatus.TOO_MANY_REQUESTS);
+        response.getHeaders().set(HttpHeaders.RETRY_AFTER, String.valueOf(RateLimiter.retryAfterSeconds(waitNanos)));
+        return response.setComplete();
+    }
+
+    private static final class CompiledRule {
+        private final HttpMethod method;
+        private final PathPattern path;
+        private final RateLimiter limiter;
+
+        private CompiledRule(HttpMethod method, PathPattern path, RateLimiter limiter) {
+            this.method = method;
+            this.path = path;
+            this.limiter = limiter;
+        }
+
+        private boolean matches(ServerHttpRequest request) {
+            return (method == null || method == request.getMethod())
+                    && path.matches(request.getPath().pathWithinApplication());
+        }
+    }
+
+    @Data
+    public static class Config {
+        private List<Rule> rules = new ArrayList<>();
+    }
+
+    @Data
+    public static class Rule {
+        private String name; // 規則名稱，同名規則在各路由之間共用桶子
+        private HttpMethod method; // 未設定時比對所有方法
+        private String path; // 路徑樣式，例如 /api/fund-api
+        private double permitsPerSecond = 5; // 每個客戶端每秒補充的 token 數
+        private int burst = 10; // 每個客戶端最多累積的 token 數
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.proxy.config;
+
+import com.example.proxy.mux.SseMultiplexer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.reactive.function.server.RequestPredicates;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.springframework.web.reactive.function.server.ServerResponse;
+
+/**
+ * 啟用 SSE 多工時，事件訂閱由 gateway 直接處理，不經過一般的代理路由
+ * (RouterFunction 的對應順序在 gateway 路由之前)。
+ */
+@Configuration
+@ConditionalOnProperty(name = "app.sse-mux.enabled", havingValue = "true")
+public class SseMultiplexConfig {
+
+    @Bean
+    public RouterFunction<ServerResponse> sseMultiplexRoute(SseMultiplexer multiplexer,
+                                                            @Value("${app.sse-mux.events-path}") String eventsPath) {
+        return RouterFunctions.route(RequestPredicates.POST(eventsPath), multiplexer::subscribe);
+    }
+}
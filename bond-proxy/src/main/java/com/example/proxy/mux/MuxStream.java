@@ -0,0 +1,210 @@
+package com.example.proxy.mux;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.Disposable;
+import reactor.core.publisher.FluxSink;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoProcessor;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * gateway 對單一後端目標的多工事件串流，經由本 gateway 連到該目標的所有客戶端 SSE 連線共用。
+ * <p>
+ * 串流開啟後後端先送出控制通道 ({@value #CONTROL_ID}) 的空框架，收到後才登記客戶端通道；後端以通道 ID 標示每個框架，
+ * 這裡依通道 ID 轉送給對應的客戶端，C 框架表示後端已結束該連線。
+ * 串流中斷或超過 idleTimeout 沒有任何框架 (後端會定期送出保活框架) 時，所有客戶端連線一併結束，由客戶端以 Last-Event-ID 重連。
+ */
+@Slf4j
+class MuxStream {
+    static final String CONTROL_ID = "-";
+    private static final DefaultDataBufferFactory BUFFERS = new DefaultDataBufferFactory();
+
+    private final URI target;
+    private final String path;
+    private final String muxId = UUID.randomUUID().toString();
+    private final WebClient webClient;
+    private final Consumer<MuxStream> onTerminate;
+    private final Map<String, Downstream> downstreams = new ConcurrentHashMap<>();
+    private final MonoProcessor<Void> ready = MonoProcessor.create();
+    private final MuxFrameDecoder decoder = new MuxFrameDecoder();
+    private final AtomicLong channelSequence = new AtomicLong();
+    private final AtomicBoolean started = new AtomicBoolean();
+    private volatile boolean terminated;
+    private volatile Disposable subscription;
+
+    MuxStream(URI target, String path, WebClient webClient, Consumer<MuxStream> onTerminate) {
+        this.target = target;
+        this.path = path;
+        this.webClient = webClient;
+        this.onTerminate = onTerminate;
+    }
+
+    void start(Duration idleTimeout) {
+        if (!started.compareAndSet(false, true)) {
+            return;
+        }
+        URI uri = UriComponentsBuilder.fromUri(target).path(path).queryParam("muxId", muxId).build().toUri();
+        log.info("Opening mux stream {} to {}", muxId, target);
+        subscription = webClient.get().uri(uri)
+                .accept(MediaType.APPLICATION_OCTET_STREAM)
+                .retrieve()
+                .bodyToFlux(DataBuffer.class)
+                .timeout(idleTimeout)
+                .subscribe(this::onData, this::onError,
+                        () -> onError(new IllegalStateException("Mux stream " + muxId + " closed by " + target)));
+    }
+
+    boolean isTerminated() {
+        return terminated;
+    }
+
+    URI getTarget() {
+        return target;
+    }
+
+    int getChannelCount() {
+        return downstreams.size();
+    }
+
+    String nextChannelId() {
+        return "c" + channelSequence.incrementAndGet();
+    }
+
+    /**
+     * 先登記客戶端再向後端登記通道，後端在登記時送出的 CONNECTED 與重播事件才不會遺失。
+     */
+    Downstream attach(String channelId, FluxSink<DataBuffer> sink) {
+        Downstream downstream = new Downstream(sink);
+        downstreams.put(channelId, downstream);
+        if (terminated) {
+            sink.error(new IllegalStateException("Mux stream " + muxId + " to " + target + " is closed"));
+        }
+        return downstream;
+    }
+
+    Mono<Void> register(String channelId, byte[] body, String lastEventId, Duration timeout) {
+        URI uri = channelUri(channelId);
+        return ready.then(Mono.defer(() -> webClient.post().uri(uri)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .headers(headers -> {
+                            if (lastEventId != null) {
+                                headers.set("Last-Event-ID", lastEventId);
+                            }
+                        })
+                        .bodyValue(body)
+                        .retrieve()
+                        .toBodilessEntity()))
+                .timeout(timeout)
+                .then();
+    }
+
+    /**
+     * 客戶端離開時通知後端結束通道；通道已由後端結束 (C 框架) 或串流已中斷時不需要通知。
+     */
+    void detach(String channelId) {
+        if (downstreams.remove(channelId) == null || terminated) {
+            return;
+        }
+        webClient.delete().uri(channelUri(channelId))
+                .retrieve()
+                .toBodilessEntity()
+                .subscribe(response -> {
+                }, e -> log.debug("Failed to release channel {} on mux stream {}: {}", channelId, muxId, e.getMessage()));
+    }
+
+    void dispose() {
+        Disposable current = subscription;
+        if (current != null) {
+            current.dispose();
+        }
+        onError(new IllegalStateException("Mux stream " + muxId + " disposed"));
+    }
+
+    private URI channelUri(String channelId) {
+        return UriComponentsBuilder.fromUri(target).path(path).pathSegment(muxId, "channels", channelId).build().toUri();
+    }
+
+    private void onData(DataBuffer data) {
+        try {
+            decoder.decode(data, this::onFrame);
+        } finally {
+            DataBufferUtils.release(data);
+        }
+    }
+
+    private void onFrame(char type, String channelId, byte[] payload) {
+        if (CONTROL_ID.equals(channelId)) {
+            // 開啟與保活訊號
+            if (!ready.isTerminated()) {
+                log.info("Mux stream {} to {} is ready", muxId, target);
+                ready.onComplete();
+            }
+            return;
+        }
+        if (type == 'C') {
+            Downstream downstream = downstreams.remove(channelId);
+            if (downstream != null) {
+                downstream.sink.complete();
+            }
+            return;
+        }
+        Downstream downstream = downstreams.get(channelId);
+        if (downstream == null) {
+            log.debug("Dropping {} bytes for unknown channel {} on mux stream {}", payload.length, channelId, muxId);
+            return;
+        }
+        downstream.send(payload);
+    }
+
+    private void onError(Throwable error) {
+        if (terminated) {
+            return;
+        }
+        terminated = true;
+        if (!ready.isTerminated()) {
+            ready.onError(error);
+        }
+        log.warn("Mux stream {} to {} terminated with {} channels: {}", muxId, target, downstreams.size(),
+                error.getMessage());
+        for (Downstream downstream : downstreams.values()) {
+            downstream.sink.error(error);
+        }
+        downstreams.clear();
+        onTerminate.accept(this);
+    }
+
+    /**
+     * 一條客戶端 SSE 連線，記錄最後一次寫出的時間，供邊緣心跳判斷是否需要發送。
+     */
+    static final class Downstream {
+        private final FluxSink<DataBuffer> sink;
+        private volatile long lastActivityNanos = System.nanoTime();
+
+        private Downstream(FluxSink<DataBuffer> sink) {
+            this.sink = sink;
+        }
+
+        void send(byte[] frame) {
+            sink.next(BUFFERS.wrap(frame));
+            lastActivityNanos = System.nanoTime();
+        }
+
+        boolean isIdleFor(long nanos) {
+            return System.nanoTime() - lastActivityNanos >= nanos;
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.proxy.ratelimit;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 一組具名的限流規則 (例如任務提交、SSE 訂閱)：每個客戶端各自一個 {@link TokenBucket}，每秒補充 permitsPerSecond 個 token，
+ * 最多累積 burst 個。
+ * <p>
+ * 客戶端數達到 maxClients 後，新的客戶端共用同一個溢出桶，記憶體用量不會隨來源數量無限成長；
+ * 閒置且桶子已滿的客戶端由 {@link RateLimiterRegistry} 定期移除，移除後再出現時等同新的客戶端。
+ */
+public class RateLimiter {
+    static final String OVERFLOW_KEY = "*";
+
+    private final String name;
+    private final double permitsPerSecond;
+    private final int burst;
+    private final long intervalNanos;
+    private final int maxClients;
+    private final Map<String, Client> clients = new ConcurrentHashMap<>();
+    private final LongAdder allowed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    public RateLimiter(String name, double permitsPerSecond, int burst, int maxClients) {
+        if (permitsPerSecond <= 0) {
+            throw new IllegalArgumentException("permitsPerSecond of rate limit " + name + " must be positive");
+        }
+        this.name = name;
+        this.permitsPerSecond = permitsPerSecond;
+        // 未設定 burst (0) 視為 1
+        this.burst = Math.max(1, burst);
+        this.intervalNanos = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond));
+        this.maxClients = maxClients;
+    }
+
+    /**
+     * 為客戶端取得一個 token。允許時回傳 0，否則回傳需要等待的奈秒數。
+     */
+    public long tryAcquire(String clientKey) {
+        long now = System.nanoTime();
+        Client client = clients.get(clientKey);
+        if (client == null) {
+            String key = clients.size() < maxClients ? clientKey : OVERFLOW_KEY;
+            client = clients.computeIfAbsent(key, k -> new Client(new TokenBucket(intervalNanos, burst, now)));
+        }
+        client.lastSeenNanos = now;
+        long wait = client.bucket.tryAcquire(now);
+        if (wait > 0) {
+            client.rejected.increment();
+            rejected.increment();
+        } else {
+            client.allowed.increment();
+            allowed.increment();
+        }
+        return wait;
+    }
+
+    void evictIdle(long idleNanos, long nowNanos) {
+        clients.values().removeIf(client -> nowNanos - client.lastSeenNanos >= idleNanos && client.bucket.isFull(nowNanos));
+    }
+
+    boolean hasSettings(double permitsPerSecond, int burst, int maxClients) {
+        return this.permitsPerSecond == permitsPerSecond && this.burst == Math.max(1, burst)
+                && this.maxClients == maxClients;
+    }
+
+    /**
+     * 回應 Retry-After 使用的秒數，至少 1 秒。
+     */
+    public static long retryAfterSeconds(long waitNanos) {
+        return Math.max(1, (waitNanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1));
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public double getPermitsPerSecond() {
+        return permitsPerSecond;
+    }
+
+    public int getBurst() {
+        return burst;
+    }
+
+    public long getAllowed() {
+        return allowed.sum();
+    }
+
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    public Map<String, Client> getClients() {
+        return clients;
+    }
+
+    public static final class Client {
+        private final TokenBucket bucket;
+        private final LongAdder allowed = new LongAdder();
+        private final LongAdder rejected = new LongAdder();
+        private volatile long lastSeenNanos;
+
+        private Client(TokenBucket bucket) {
+            this.bucket = bucket;
+        }
+
+        public long getAllowed() {
+            return allowed.sum();
+        }
+
+        public long getRejected() {
+            return rejected.sum();
+        }
+
+        public long getAvailable(long nowNanos) {
+            return bucket.available(nowNanos);
+        }
+
+        public long getLastSeenNanos() {
+            return lastSeenNanos;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.proxy.ratelimit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.net.InetSocketAddress;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 目前生效的限流規則，以名稱登記，讓路由 filter 與不經過路由的 SSE 多工訂閱共用同一組桶子。
+ * 路由重新整理時設定相同的規則沿用原本的桶子與計數，設定改變時以新的規則取代。
+ * <p>
+ * 客戶端預設以來源 IP 識別。標頭由客戶端自行決定，任何人都能每次換一個值取得新的桶子，因此只有在 gateway 前面
+ * 的認證層會覆寫這些標頭時才應開啟：trustClientIdHeader 改用 clientIdHeader 標頭 (例如認證層帶上的使用者 ID)，
+ * trustForwardedFor 改用 X-Forwarded-For 的第一個位址。
+ */
+@Component
+public class RateLimiterRegistry {
+    private final Map<String, RateLimiter> limiters = new ConcurrentHashMap<>();
+    private final String clientIdHeader;
+    private final boolean trustClientIdHeader;
+    private final boolean trustForwardedFor;
+    private final int maxClients;
+    private final long idleNanos;
+    private final ScheduledExecutorService evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "rate-limit-evictor");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public RateLimiterRegistry(@Value("${app.rate-limit.client-id-header:X-Client-Id}") String clientIdHeader,
+                               @Value("${app.rate-limit.trust-client-id-header:false}") boolean trustClientIdHeader,
+                               @Value("${app.rate-limit.trust-forwarded-for:false}") boolean trustForwardedFor,
+                               @Value("${app.rate-limit.max-clients:100000}") int maxClients,
+                               @Value("${app.rate-limit.client-idle-ms:600000}") long clientIdleMs) {
+        this.clientIdHeader = clientIdHeader;
+        this.trustClientIdHeader = trustClientIdHeader;
+        this.trustForwardedFor = trustForwardedFor;
+        this.maxClients = maxClients;
+        this.idleNanos = TimeUnit.MILLISECONDS.toNanos(clientIdleMs);
+    }
+
+    @PostConstruct
+    public void start() {
+        long period = Math.max(1000, TimeUnit.NANOSECONDS.toMillis(idleNanos) / 4);
+        evictor.scheduleWithFixedDelay(() -> {
+            long now = System.nanoTime();
+            for (RateLimiter limiter : limiters.values()) {
+                limiter.evictIdle(idleNanos, now);
+            }
+        }, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        evictor.shutdownNow();
+    }
+
+    public RateLimiter register(String name, double permitsPerSecond, int burst) {
+        return limiters.compute(name, (key, existing) -> existing != null && existing.hasSettings(permitsPerSecond, burst, maxClients)
+                ? existing
+                : new RateLimiter(key, permitsPerSecond, burst, maxClients));
+    }
+
+    public RateLimiter get(String name) {
+        return limiters.get(name);
+    }
+
+    public Collection<RateLimiter> getLimiters() {
+        return limiters.values();
+    }
+
+    public String clientKey(ServerHttpRequest request) {
+        if (trustClientIdHeader) {
+            String clientId = request.getHeaders().getFirst(clientIdHeader);
+            if (clientId != null && !clientId.isEmpty()) {
+                return "id:" + clientId;
+            }
+        }
+        if (trustForwardedFor) {
+            String forwarded = request.getHeaders().getFirst("X-Forwarded-For");
+            if (forwarded != null && !forwarded.isEmpty()) {
+                int comma = forwarded.indexOf(',');
+                return "ip:" + (comma < 0 ? forwarded : forwarded.substring(0, comma)).trim();
+            }
+        }
+        InetSocketAddress remote = request.getRemoteAddress();
+        if (remote == null) {
+            return "ip:unknown";
+        }
+        return "ip:" + (remote.getAddress() != null ? remote.getAddress().getHostAddress() : remote.getHostString());
+    }
+}
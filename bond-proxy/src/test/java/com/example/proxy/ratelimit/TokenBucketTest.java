@@ -0,0 +1,62 @@
+package com.example.proxy.ratelimit;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TokenBucketTest {
+    private static final long INTERVAL = TimeUnit.MILLISECONDS.toNanos(100);
+
+    @Test
+    void allowsBurstThenReportsWaitForNextToken() {
+        TokenBucket bucket = new TokenBucket(INTERVAL, 3, 0);
+
+        assertEquals(3, bucket.available(0));
+        assertEquals(0, bucket.tryAcquire(0));
+        assertEquals(0, bucket.tryAcquire(0));
+        assertEquals(0, bucket.tryAcquire(0));
+        assertEquals(0, bucket.available(0));
+        assertEquals(INTERVAL, bucket.tryAcquire(0));
+        assertEquals(INTERVAL / 2, bucket.tryAcquire(INTERVAL / 2));
+    }
+
+    @Test
+    void refillsOneTokenPerInterval() {
+        TokenBucket bucket = new TokenBucket(INTERVAL, 3, 0);
+        for (int i = 0; i < 3; i++) {
+            bucket.tryAcquire(0);
+        }
+
+        assertEquals(2, bucket.available(INTERVAL * 5 / 2));
+        assertEquals(0, bucket.tryAcquire(INTERVAL));
+        assertEquals(INTERVAL, bucket.tryAcquire(INTERVAL));
+        assertFalse(bucket.isFull(INTERVAL));
+    }
+
+    @Test
+    void neverAccumulatesMoreThanBurst() {
+        TokenBucket bucket = new TokenBucket(INTERVAL, 2, 0);
+        long later = INTERVAL * 100;
+
+        assertTrue(bucket.isFull(later));
+        assertEquals(2, bucket.available(later));
+        assertEquals(0, bucket.tryAcquire(later));
+        assertEquals(0, bucket.tryAcquire(later));
+        assertEquals(INTERVAL, bucket.tryAcquire(later));
+    }
+
+    @Test
+    void retryAfterRoundsUpToWholeSecondsAndIsAtLeastOne() {
+        long second = TimeUnit.SECONDS.toNanos(1);
+
+        assertEquals(1, RateLimiter.retryAfterSeconds(0));
+        assertEquals(1, RateLimiter.retryAfterSeconds(1));
+        assertEquals(1, RateLimiter.retryAfterSeconds(second));
+        assertEquals(2, RateLimiter.retryAfterSeconds(second + 1));
+        assertEquals(3, RateLimiter.retryAfterSeconds(second * 5 / 2));
+    }
+}
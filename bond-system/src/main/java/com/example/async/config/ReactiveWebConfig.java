@@ -0,0 +1,20 @@
+package com.example.async.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 以 reactive profile (spring.main.web-application-type=reactive) 啟動時的 WebFlux 設定。
+ */
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveWebConfig {
+
+    // Tomcat 仍在 classpath 上，Spring Boot 預設會以 Tomcat 承載 WebFlux；SSE 長連線改由 Netty 的事件迴圈處理
+    @Bean
+    public NettyReactiveWebServerFactory nettyReactiveWebServerFactory() {
+        return new NettyReactiveWebServerFactory();
+    }
+}
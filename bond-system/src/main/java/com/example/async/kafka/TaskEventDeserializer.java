@@ -0,0 +1,47 @@
+package com.example.async.kafka;
+
+import com.example.async.model.TaskEvent;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Deserializer;
+
+import java.util.Map;
+
+/**
+ * 同時接受兩種格式的 TaskEvent 反序列化器：第一個位元組為二進位格式的 magic 時以二進位解碼，
+ * 其餘交給 JSON 反序列化器。切換 topic 格式或滾動部署時，新舊格式的訊息可以並存。
+ */
+public class TaskEventDeserializer implements Deserializer<TaskEvent> {
+    private final Deserializer<TaskEvent> jsonDeserializer;
+    private final TaskEventBinaryCodec binaryCodec;
+
+    public TaskEventDeserializer(Deserializer<TaskEvent> jsonDeserializer, TaskEventBinaryCodec binaryCodec) {
+        this.jsonDeserializer = jsonDeserializer;
+        this.binaryCodec = binaryCodec;
+    }
+
+    @Override
+    public void configure(Map<String, ?> configs, boolean isKey) {
+        jsonDeserializer.configure(configs, isKey);
+    }
+
+    @Override
+    public TaskEvent deserialize(String topic, byte[] data) {
+        if (TaskEventBinaryCodec.isBinary(data)) {
+            return binaryCodec.decode(data);
+        }
+        return jsonDeserializer.deserialize(topic, data);
+    }
+
+    @Override
+    public TaskEvent deserialize(String topic, Headers headers, byte[] data) {
+        if (TaskEventBinaryCodec.isBinary(data)) {
+            return binaryCodec.decode(data);
+        }
+        return jsonDeserializer.deserialize(topic, headers, data);
+    }
+
+    @Override
+    public void close() {
+        jsonDeserializer.close();
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.async.kafka;
+
+import com.example.async.model.TaskEvent;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Serializer;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 依 topic 選擇 JSON 或二進位格式的 TaskEvent 序列化器。
+ * <p>
+ * topic 設定可以是完整名稱，或以 * 結尾比對前綴 (例如各 pod 專屬的 {@code task-events-*})，
+ * 都不符合時使用預設格式。
+ */
+public class TaskEventSerializer implements Serializer<TaskEvent> {
+    private final Serializer<TaskEvent> jsonSerializer;
+    private final TaskEventBinaryCodec binaryCodec;
+    private final TaskEventWireFormat defaultFormat;
+    private final Map<String, TaskEventWireFormat> topicFormats;
+    private final Map<String, TaskEventWireFormat> resolvedFormats = new ConcurrentHashMap<>();
+
+    public TaskEventSerializer(Serializer<TaskEvent> jsonSerializer, TaskEventBinaryCodec binaryCodec,
+                               TaskEventWireFormat defaultFormat, Map<String, TaskEventWireFormat> topicFormats) {
+        this.jsonSerializer = jsonSerializer;
+        this.binaryCodec = binaryCodec;
+        this.defaultFormat = defaultFormat;
+        this.topicFormats = topicFormats;
+    }
+
+    @Override
+    public void configure(Map<String, ?> configs, boolean isKey) {
+        jsonSerializer.configure(configs, isKey);
+    }
+
+    @Override
+    public byte[] serialize(String topic, TaskEvent data) {
+        if (data == null) {
+            return null;
+        }
+        return formatFor(topic) == TaskEventWireFormat.BINARY
+                ? binaryCodec.encode(data) : jsonSerializer.serialize(topic, data);
+    }
+
+    @Override
+    public byte[] serialize(String topic, Headers headers, TaskEvent data) {
+        if (data == null) {
+            return null;
+        }
+        return formatFor(topic) == TaskEventWireFormat.BINARY
+                ? binaryCodec.encode(data) : jsonSerializer.serialize(topic, headers, data);
+    }
+
+    public TaskEventWireFormat formatFor(String topic) {
+        return resolvedFormats.computeIfAbsent(topic, this::resolve);
+    }
+
+    private TaskEventWireFormat resolve(String topic) {
+        TaskEventWireFormat exact = topicFormats.get(topic);
+        if (exact != null) {
+            return exact;
+        }
+        TaskEventWireFormat match = defaultFormat;
+        int longestPrefix = -1;
+        for (Map.Entry<String, TaskEventWireFormat> entry : topicFormats.entrySet()) {
+            String pattern = entry.getKey();
+            if (pattern.endsWith("*")) {
+                String prefix = pattern.substring(0, pattern.length() - 1);
+                if (topic.startsWith(prefix) && prefix.length() > longestPrefix) {
+                    match = entry.getValue();
+                    longestPrefix = prefix.length();
+                }
+            }
+        }
+        return match;
+    }
+
+    @Override
+    public void close() {
+        jsonSerializer.close();
+    }
+}
@@ -1,21 +1,30 @@
 package com.example.async.listener;
 
+import com.example.async.journal.TaskEventJournal;
 import com.example.async.model.TaskEvent;
 import com.example.async.service.BondService;
+import com.example.async.service.SseConnectionRegistry;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.kafka.annotation.KafkaListener;
 import org.springframework.stereotype.Component;
 
+import java.util.List;
+
 @Component
 @RequiredArgsConstructor
 @Slf4j
 public class BondEventListener {
     private final BondService bondService;
+    private final TaskEventJournal journal;
 
-    @KafkaListener(topics = "bond-events", groupId = "${spring.kafka.consumer.group-id}")
-    public void handleTaskEvent(TaskEvent event) {
-        log.info("債券系統 - 收到事件: {}", event);
-        bondService.handleEvent(event);
+    // 廣播 topic 只承載歸屬未知的事件，其餘事件會直接送到本 pod 專屬的 topic
+    @KafkaListener(topics = {SseConnectionRegistry.BROADCAST_TOPIC, SseConnectionRegistry.BROADCAST_TOPIC + "-${app.pod-id}"},
+            groupId = "${spring.kafka.consumer.group-id}")
+    public void handleTaskEvents(List<TaskEvent> events) {
+        log.debug("債券系統 - 收到 {} 個事件", events.size());
+        // 先寫入本 pod 的事件日誌，客戶端之後可以查詢任務狀態與歷史
+        journal.appendAll(events);
+        bondService.handleEvents(events);
     }
 }
\ No newline at end of file
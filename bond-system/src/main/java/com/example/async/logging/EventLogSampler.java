@@ -0,0 +1,31 @@
+package com.example.async.logging;
+
+import org.slf4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 每個事件都會經過的熱路徑日誌取樣。
+ * <p>
+ * 該 logger 開啟 DEBUG 時每筆都記錄；否則每 sample-rate 筆才記錄一筆，
+ * 呼叫端以此判斷是否要格式化並輸出一行 key=value 摘要 (不呼叫 TaskEvent#toString)。
+ * sample-rate 為 0 時只在 DEBUG 下記錄。連線建立、完成與錯誤等生命週期日誌不經過取樣。
+ */
+@Component
+public class EventLogSampler {
+    private final long sampleRate;
+    private final AtomicLong counter = new AtomicLong();
+
+    public EventLogSampler(@Value("${app.logging.event-sample-rate:1000}") long sampleRate) {
+        this.sampleRate = sampleRate;
+    }
+
+    public boolean shouldLog(Logger log) {
+        if (log.isDebugEnabled()) {
+            return true;
+        }
+        return sampleRate > 0 && log.isInfoEnabled() && counter.getAndIncrement() % sampleRate == 0;
+    }
+}
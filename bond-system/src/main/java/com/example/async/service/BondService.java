@@ -1,134 +1,270 @@
 package com.example.async.service;
 
+import com.example.async.logging.EventLogSampler;
+import com.example.async.metrics.TaskEventMetrics;
+import com.example.async.model.TaskCorrelationId;
 import com.example.async.model.TaskEvent;
 import com.example.async.model.TaskRequest;
+import com.example.async.sse.ConnectionTracker;
+import com.example.async.sse.FluxSseEmitter;
+import com.example.async.sse.HeartbeatSweeper;
+import com.example.async.sse.MuxedSseEmitter;
+import com.example.async.sse.PreEncodedSseEvent;
+import com.example.async.sse.SseConnection;
+import com.example.async.sse.SseConnectionLimits;
+import com.example.async.sse.SseFrameEncoder;
+import com.example.async.sse.SseReplayBuffer;
+import com.example.async.sse.SseReplayStore;
+import com.example.async.sse.SseWriterPool;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import javax.annotation.PostConstruct;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 import java.util.concurrent.*;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class BondService {
-    private final KafkaTemplate<String, TaskEvent> kafkaTemplate;
-    private final Map<String, SseEmitter> sseEmitterMap = new ConcurrentHashMap<>();
-    private final Map<String, ScheduledFuture<?>> heartbeatFutureMap = new ConcurrentHashMap<>();
-    private final Map<String, List<String>> sseConnectionTaskIdsMap = new ConcurrentHashMap<>();
-    private final Map<String, Set<String>> sseConnectionCompletedTasksMap = new ConcurrentHashMap<>();
-    private static final String EVENT_TOPIC = "bond-events";
-    private static final ScheduledExecutorService HEARTBEAT_SCHEDULER = Executors.newScheduledThreadPool(2);
-    private static final long HEARTBEAT_INTERVAL_SECONDS = 10;
-
-    private static final Pattern CORRELATION_ID_PATTERN = Pattern.compile("^(.*?)-\\d+$");
-    private static final Pattern SSE_CONNECTION_ID_EXTRACTOR_PATTERN = Pattern.compile("^(.*)-[^-]+$");
+    private final TaskEventPublisher eventPublisher;
+    private final SseConnectionRegistry connectionRegistry;
+    private final HeartbeatSweeper heartbeatSweeper;
+    private final SseReplayStore replayStore;
+    private final SseFrameEncoder frameEncoder;
+    private final EventLogSampler eventLog;
+    private final TaskEventMetrics metrics;
+    private final SseWriterPool writerPool;
+    private final SseConnectionLimits connectionLimits;
+    private final Map<String, SseConnection> sseConnectionMap = new ConcurrentHashMap<>();
+    // 有指定 taskIds 的 SSE 連線才有追蹤器
+    private final Map<String, ConnectionTracker> connectionTrackers = new ConcurrentHashMap<>();
+
+    // 內容固定的事件預先編碼，每條連線只需填入自己的 ID
+    private SseFrameEncoder.Template connectedTemplate;
+    private SseFrameEncoder.Template heartbeatTemplate;
+    private SseFrameEncoder.Template allTasksCompletedTemplate;
+
+    // 無法解析出 SSE 連線 ID 的 correlationId 次數，只計數不逐筆記錄 WARN
+    private final AtomicLong malformedCorrelationIds = new AtomicLong();
+
+    /**
+     * 本 pod 的連線數是否還能接受此訂閱。同一 ID 重連會取代原本的連線，不會增加連線數；
+     * 拒絕時呼叫端應回應 503 並帶上 Retry-After ({@link SseConnectionLimits#getRetryAfterSeconds()})。
+     */
+    public boolean tryAdmit(String sseConnectionId) {
+        if (sseConnectionMap.containsKey(sseConnectionId) || connectionLimits.tryAdmit(sseConnectionMap.size())) {
+            return true;
+        }
+        if (eventLog.shouldLog(log)) {
+            log.warn("債券系統 - SSE 連線數已達上限 {}，拒絕關聯 ID {} 的訂閱", connectionLimits.getMaxConnections(), sseConnectionId);
+        }
+        return false;
+    }
 
     public SseEmitter createSseEmitter(String sseConnectionId, List<String> taskIds) {
+        return createSseEmitter(sseConnectionId, taskIds, null);
+    }
+
+    /**
+     * 建立 SSE 連線。lastEventId 為客戶端重連時帶上的 Last-Event-ID，
+     * 若本 pod 仍保留此連線的重播緩衝區，會先補送序號之後的事件。
+     */
+    public SseEmitter createSseEmitter(String sseConnectionId, List<String> taskIds, String lastEventId) {
         SseEmitter emitter = new SseEmitter(Long.MAX_VALUE);
+        attachConnection(emitter, sseConnectionId, taskIds, lastEventId, true, true);
+        return emitter;
+    }
+
+    /**
+     * 在 gateway 的多工串流上建立 SSE 連線，事件寫入多工串流的通道。心跳由 gateway 對客戶端發送，不登記到心跳掃描器。
+     */
+    public void attachMuxedConnection(MuxedSseEmitter emitter, String sseConnectionId, List<String> taskIds,
+                                      String lastEventId) {
+        attachConnection(emitter, sseConnectionId, taskIds, lastEventId, false, true);
+    }
+
+    /**
+     * 在 WebFlux 模式下建立 SSE 連線，事件放入連線自己的有界佇列，由 WebFlux 非阻塞地寫出，不需要再經過寫出執行緒池。
+     */
+    public void attachReactiveConnection(FluxSseEmitter emitter, String sseConnectionId, List<String> taskIds,
+                                         String lastEventId) {
+        attachConnection(emitter, sseConnectionId, taskIds, lastEventId, true, false);
+    }
 
+    /**
+     * heartbeat 決定是否登記到心跳掃描器；queued 為 true 時事件只放入連線的待寫佇列，由寫出執行緒池寫入 emitter。
+     */
+    private void attachConnection(SseEmitter emitter, String sseConnectionId, List<String> taskIds,
+                                  String lastEventId, boolean heartbeat, boolean queued) {
         if (taskIds != null && !taskIds.isEmpty()) {
             log.info("債券系統 - SSE 連線 {} 將追蹤任務 IDs: {}", sseConnectionId, taskIds);
-            sseConnectionTaskIdsMap.put(sseConnectionId, new ArrayList<>(taskIds));
-            sseConnectionCompletedTasksMap.put(sseConnectionId, new HashSet<>());
+            connectionTrackers.put(sseConnectionId, new ConnectionTracker(taskIds));
         } else {
             log.info("債券系統 - SSE 連線 {} 不追蹤特定任務 IDs (或 taskIds 為空)", sseConnectionId);
         }
 
+        // 心跳內容對同一連線永遠相同，建立連線時編碼一次，之後每次心跳直接重用
+        PreEncodedSseEvent heartbeatEvent = heartbeatTemplate.render(sseConnectionId);
+        SseConnection connection = queued
+                ? new SseConnection(sseConnectionId, emitter, heartbeatEvent, writerPool, this::cleanupSseResources)
+                : new SseConnection(sseConnectionId, emitter, heartbeatEvent);
+
         emitter.onCompletion(() -> {
             log.info("債券系統 - 關聯 ID 為 {} 的 SSE 連線已完成", sseConnectionId);
-            cleanupSseResources(sseConnectionId);
+            cleanupSseResources(connection);
         });
 
         emitter.onTimeout(() -> {
             log.info("債券系統 - 關聯 ID 為 {} 的 SSE 連線超時", sseConnectionId);
-            cleanupSseResources(sseConnectionId);
+            cleanupSseResources(connection);
             emitter.complete();
         });
 
         emitter.onError(ex -> {
             log.error("債券系統 - 關聯 ID 為 {} 的 SSE 發生錯誤", sseConnectionId, ex);
-            cleanupSseResources(sseConnectionId);
+            cleanupSseResources(connection);
             emitter.complete();
         });
 
         try {
-            TaskEvent connectEvent = TaskEvent.builder()
-                    .correlationId(sseConnectionId)
-                    .status("CONNECTED")
-                    .message("債券系統 SSE連接已建立")
-                    .finalEvent(false)
-                    .build();
-
-            emitter.send(SseEmitter.event()
-                    .name("CONNECTED")
-                    .data(connectEvent));
+            connection.send(connectedTemplate.render(sseConnectionId));
 
-            sseEmitterMap.put(sseConnectionId, emitter);
-            startHeartbeat(sseConnectionId);
+            // 在緩衝區鎖內登記連線並重播，確保重播與新到達的事件之間不會重複或亂序
+            SseReplayBuffer replayBuffer = replayStore.attach(sseConnectionId);
+            synchronized (replayBuffer) {
+                sseConnectionMap.put(sseConnectionId, connection);
+                Long lastSequence = parseLastEventId(sseConnectionId, lastEventId);
+                if (lastSequence != null) {
+                    replayMissedEvents(connection, replayBuffer, lastSequence);
+                }
+            }
+            connectionRegistry.register(sseConnectionId);
+            if (heartbeat) {
+                heartbeatSweeper.register(connection);
+            }
             log.info("債券系統 - 已為關聯 ID {} 添加 SSE Emitter 到映射中", sseConnectionId);
         } catch (IOException e) {
             log.error("債券系統 - 向關聯 ID 為 {} 的 SSE 發送初始事件時出錯", sseConnectionId, e);
-            cleanupSseResources(sseConnectionId);
+            cleanupSseResources(connection);
             emitter.completeWithError(e);
         }
-        return emitter;
     }
 
-    private void startHeartbeat(String correlationId) {
-        log.info("債券系統 - 啟動心跳機制，關聯 ID: {}, 心跳間隔: {}秒", correlationId, HEARTBEAT_INTERVAL_SECONDS);
-        ScheduledFuture<?> future = HEARTBEAT_SCHEDULER.scheduleAtFixedRate(() -> {
-            SseEmitter emitter = sseEmitterMap.get(correlationId);
-            if (emitter != null) {
-                try {
-                    log.debug("債券系統 - 發送心跳到 SSE 連線，關聯 ID: {}", correlationId);
-                    TaskEvent heartbeatEvent = TaskEvent.builder()
-                            .correlationId(correlationId)
-                            .status("HEARTBEAT")
-                            .message("債券系統心跳檢測")
-                            .finalEvent(false)
-                            .build();
-                    emitter.send(SseEmitter.event()
-                            .id(String.valueOf(System.currentTimeMillis()))
-                            .name("HEARTBEAT")
-                            .data(heartbeatEvent)
-                            .reconnectTime(0));
-                } catch (IOException e) {
-                    log.error("債券系統 - 發送心跳到關聯 ID 為 {} 的 SSE 時出錯: {}", correlationId, e.getMessage());
-                    cleanupSseResources(correlationId);
-                }
-            } else {
-                log.info("債券系統 - 找不到關聯 ID 為 {} 的 SSE emitter，停止心跳", correlationId);
-                stopHeartbeat(correlationId);
+    private Long parseLastEventId(String sseConnectionId, String lastEventId) {
+        if (lastEventId == null || lastEventId.isEmpty()) {
+            return null;
+        }
+        try {
+            return Long.parseLong(lastEventId.trim());
+        } catch (NumberFormatException e) {
+            log.warn("債券系統 - SSE 連線 {} 的 Last-Event-ID {} 格式不正確，略過重播", sseConnectionId, lastEventId);
+            return null;
+        }
+    }
+
+    /**
+     * 重播序號大於 lastSequence 的事件。追蹤任務的完成狀態會用緩衝區內所有最終事件重新計算，
+     * 因為斷線前的追蹤狀態已隨舊連線清除。
+     */
+    private void replayMissedEvents(SseConnection connection, SseReplayBuffer replayBuffer, long lastSequence)
+            throws IOException {
+        String sseConnectionId = connection.getId();
+        boolean tracked = connectionTrackers.containsKey(sseConnectionId);
+        boolean shouldClose = false;
+        int replayed = 0;
+        for (SseReplayBuffer.Entry entry : replayBuffer.snapshot()) {
+            TaskEvent event = entry.getEvent();
+            boolean missed = entry.getSequence() > lastSequence;
+            if (missed) {
+                connection.send(entry.getFrame());
+                replayed++;
+            }
+            if (event.isFinalEvent() && (missed || tracked)) {
+                shouldClose |= recordTaskCompletion(sseConnectionId, event.getCorrelationId());
             }
-        }, 2, HEARTBEAT_INTERVAL_SECONDS, TimeUnit.SECONDS);
-        heartbeatFutureMap.put(correlationId, future);
+        }
+        log.info("債券系統 - SSE 連線 {} 重連，已重播序號 {} 之後的 {} 個事件", sseConnectionId, lastSequence, replayed);
+        if (shouldClose) {
+            completeConnection(connection);
+        }
+    }
+
+    @PostConstruct
+    void startConnectionReaper() {
+        connectionLimits.startReaper(this::reapConnections);
     }
 
-    private void stopHeartbeat(String correlationId) {
-        ScheduledFuture<?> future = heartbeatFutureMap.remove(correlationId);
-        if (future != null) {
-            future.cancel(false);
-            log.info("債券系統 - 已停止關聯 ID 為 {} 的心跳", correlationId);
+    /**
+     * 批次結束閒置或超過存活時間的連線。先清理路由與心跳，再結束 emitter；重播緩衝區保留到過期，
+     * 客戶端若還在，會以 Last-Event-ID 重連補齊。追蹤中的任務尚未全部完成的連線只略過閒置檢查，超過存活時間仍會結束。
+     */
+    private void reapConnections() {
+        List<SseConnection> expired = connectionLimits.collectExpired(sseConnectionMap.values(), connection -> {
+            ConnectionTracker tracker = connectionTrackers.get(connection.getId());
+            return tracker != null && tracker.getRemaining() > 0;
+        });
+        if (expired.isEmpty()) {
+            return;
+        }
+        for (SseConnection connection : expired) {
+            cleanupSseResources(connection);
+            try {
+                connection.complete();
+            } catch (IllegalStateException e) {
+                // 客戶端已離開，emitter 已經結束
+            }
         }
+        log.info("債券系統 - 回收 {} 條閒置或超過存活時間的 SSE 連線，剩餘 {} 條", expired.size(), sseConnectionMap.size());
+    }
+
+    @PostConstruct
+    void bindMetrics() {
+        metrics.bindConnections(sseConnectionMap, connectionTrackers, malformedCorrelationIds);
     }
 
-    private void cleanupSseResources(String sseConnectionId) {
-        sseEmitterMap.remove(sseConnectionId);
-        stopHeartbeat(sseConnectionId);
-        sseConnectionTaskIdsMap.remove(sseConnectionId);
-        sseConnectionCompletedTasksMap.remove(sseConnectionId);
+    @PostConstruct
+    void initFrameTemplates() {
+        try {
+            connectedTemplate = frameEncoder.template("CONNECTED", TaskEvent.builder()
+                    .status("CONNECTED")
+                    .message("債券系統 SSE連接已建立")
+                    .finalEvent(false)
+                    .build(), null);
+            heartbeatTemplate = frameEncoder.template("HEARTBEAT", TaskEvent.builder()
+                    .status("HEARTBEAT")
+                    .message("債券系統心跳檢測")
+                    .finalEvent(false)
+                    .build(), 0L);
+            allTasksCompletedTemplate = frameEncoder.template("ALL_TASKS_COMPLETED", TaskEvent.builder()
+                    .status("ALL_TASKS_COMPLETED")
+                    .message("所有為此SSE連線追蹤的債券任務已處理完畢")
+                    .finalEvent(true)
+                    .build(), null);
+        } catch (IOException e) {
+            throw new IllegalStateException("債券系統 - 無法預先編碼固定的 SSE 事件", e);
+        }
+    }
+
+    private void cleanupSseResources(SseConnection connection) {
+        String sseConnectionId = connection.getId();
+        // 只清理屬於這條連線的資源，避免舊連線的回調清掉同一 ID 剛重連的新連線
+        heartbeatSweeper.unregister(connection);
+        if (!sseConnectionMap.remove(sseConnectionId, connection)) {
+            return;
+        }
+        replayStore.detach(sseConnectionId);
+        connectionRegistry.unregister(sseConnectionId);
+        connectionTrackers.remove(sseConnectionId);
         log.info("債券系統 - 已清理 SSE 連線 {} 的所有相關資源", sseConnectionId);
     }
 
@@ -167,82 +303,199 @@ public class BondService {
 
     private void publishEvent(TaskEvent event) {
         try {
-            log.info("債券系統 - 向 Kafka 發布事件: {}", event);
-            kafkaTemplate.send(EVENT_TOPIC, event.getCorrelationId(), event);
+            // 直接送往持有該 SSE 連線的 pod，歸屬未知時才走廣播 topic
+            String sseConnectionId = stampCorrelationFields(event);
+            String topic = connectionRegistry.resolveEventTopic(sseConnectionId);
+            event.setPublishedAt(System.currentTimeMillis());
+            // 每個事件都會經過這裡，只取樣記錄摘要欄位，不呼叫 TaskEvent#toString
+            if (eventLog.shouldLog(log)) {
+                log.info("債券系統 - 發布事件 topic={} correlationId={} status={} finalEvent={}",
+                        topic, event.getCorrelationId(), event.getStatus(), event.isFinalEvent());
+            }
+            // 以 SSE 連線 ID 為 key：同一連線的事件落在同一分區維持順序，不同連線分散到各分區並行消費
+            eventPublisher.publish(topic, sseConnectionId, event);
         } catch (Exception e) {
             log.error("債券系統 - 發布事件到 Kafka 失敗: {}", e.getMessage(), e);
         }
     }
 
-    private String extractSseConnectionIdFromSingleTaskId(String singleTaskId) {
-        if (singleTaskId == null)
-            return null;
-        Matcher matcher = SSE_CONNECTION_ID_EXTRACTOR_PATTERN.matcher(singleTaskId);
-        if (matcher.matches()) {
-            return matcher.group(1);
+    /**
+     * 在發布端把 correlationId 解析成結構化欄位寫入事件，回傳 SSE 連線 ID。
+     */
+    private String stampCorrelationFields(TaskEvent event) {
+        TaskCorrelationId parsed = TaskCorrelationId.parse(event.getCorrelationId());
+        if (parsed == null) {
+            malformedCorrelationIds.incrementAndGet();
+            return event.getCorrelationId();
+        }
+        event.setSseConnectionId(parsed.getSseConnectionId());
+        event.setTaskIndex(parsed.getTaskIndex());
+        return parsed.getSseConnectionId();
+    }
+
+    /**
+     * 消費端的路由只讀取事件上的 sseConnectionId；舊版發布端送來的事件沒有此欄位時才退回解析 correlationId。
+     */
+    private String resolveSseConnectionId(TaskEvent event) {
+        if (event.getSseConnectionId() != null) {
+            return event.getSseConnectionId();
+        }
+        TaskCorrelationId parsed = TaskCorrelationId.parse(event.getCorrelationId());
+        if (parsed != null) {
+            return parsed.getSseConnectionId();
         }
-        log.warn("債券系統 - 無法從 {} 中提取 SSE 連線 ID，將使用原 ID。", singleTaskId);
-        return singleTaskId;
+        // 無法解析時沿用原 ID (可能本身就是 SSE 連線 ID)，只計數，避免每筆事件都記錄 WARN
+        malformedCorrelationIds.incrementAndGet();
+        log.debug("債券系統 - 無法從 {} 中提取 SSE 連線 ID，將使用原 ID。", event.getCorrelationId());
+        return event.getCorrelationId();
+    }
+
+    public long getMalformedCorrelationIdCount() {
+        return malformedCorrelationIds.get();
     }
 
     public void handleEvent(TaskEvent event) {
-        String singleTaskId = event.getCorrelationId();
-        log.info("債券系統 - Kafka 監聽器收到事件，單任務 ID: {}, 狀態: {}", singleTaskId, event.getStatus());
+        handleEvents(Collections.singletonList(event));
+    }
+
+    /**
+     * 處理一次 poll 取得的事件：依 SSE 連線分組並保留連線內的順序，每條連線的事件合併成一次寫出。
+     */
+    public void handleEvents(List<TaskEvent> events) {
+        Map<String, List<TaskEvent>> eventsByConnection = new LinkedHashMap<>();
+        for (TaskEvent event : events) {
+            String singleTaskId = event.getCorrelationId(); // 事件的 correlationId 是單個任務的 ID
+            if (eventLog.shouldLog(log)) {
+                log.info("債券系統 - 收到事件 correlationId={} status={} finalEvent={}",
+                        singleTaskId, event.getStatus(), event.isFinalEvent());
+            }
+
+            String sseConnectionId = resolveSseConnectionId(event);
+            if (sseConnectionId == null) {
+                log.error("債券系統 - 無法從單任務 ID {} 提取 SSE 連線 ID，忽略事件。", singleTaskId);
+                continue;
+            }
+            eventsByConnection.computeIfAbsent(sseConnectionId, k -> new ArrayList<>()).add(event);
+        }
+        eventsByConnection.forEach(this::handleConnectionEvents);
+    }
 
-        String sseConnectionId = extractSseConnectionIdFromSingleTaskId(singleTaskId);
-        if (sseConnectionId == null) {
-            log.error("債券系統 - 無法從單任務 ID {} 提取 SSE 連線 ID，忽略事件。", singleTaskId);
+    private void handleConnectionEvents(String sseConnectionId, List<TaskEvent> events) {
+        SseReplayBuffer replayBuffer = replayStore.get(sseConnectionId);
+        if (replayBuffer == null) {
+            if (connectionRegistry.findOwner(sseConnectionId) != null) {
+                // 歸屬未知時發布到廣播 topic 的事件，由持有連線的其他 pod 負責發送
+                metrics.recordMisrouted(events.size());
+                log.debug("債券系統 - SSE 連線 {} 由其他 pod 持有，忽略 {} 個事件", sseConnectionId, events.size());
+            } else {
+                metrics.recordDropped(events.size());
+                // 客戶端離開後任務仍會持續產生事件，取樣記錄避免洗版
+                if (eventLog.shouldLog(log)) {
+                    log.warn("債券系統 - 找不到 SSE 連線 ID {} 對應的 SseEmitter。{} 個事件可能無法發送或已被處理",
+                            sseConnectionId, events.size());
+                }
+            }
             return;
         }
-        log.info("債券系統 - 從單任務 ID {} 提取到 SSE 連線 ID: {}", singleTaskId, sseConnectionId);
 
-        SseEmitter emitter = sseEmitterMap.get(sseConnectionId);
-        if (emitter != null) {
-            try {
-                log.debug("債券系統 - 向 SSE 連線 {} 發送事件: {}", sseConnectionId, event);
-                emitter.send(SseEmitter.event()
-                        .id(singleTaskId + "-" + System.currentTimeMillis())
-                        .name(event.getStatus())
-                        .data(event));
-                log.info("債券系統 - 已向 SSE 連線 {} 發送事件，單任務 ID: {}, 狀態: {}", sseConnectionId, singleTaskId,
-                        event.getStatus());
-
-                List<String> trackedTaskIds = sseConnectionTaskIdsMap.get(sseConnectionId);
-                if (trackedTaskIds != null && !trackedTaskIds.isEmpty()) {
-                    if (event.isFinalEvent()) {
-                        log.info("債券系統 - 單任務 {} (屬於 SSE 連線 {}) 已完成 (finalEvent=true)", singleTaskId, sseConnectionId);
-                        Set<String> completedTasks = sseConnectionCompletedTasksMap.computeIfAbsent(sseConnectionId,
-                                k -> new HashSet<>());
-                        completedTasks.add(singleTaskId);
-                        log.info("債券系統 - SSE 連線 {} 的已完成任務列表: {}", sseConnectionId, completedTasks);
-
-                        if (completedTasks.containsAll(trackedTaskIds) && trackedTaskIds.containsAll(completedTasks)) {
-                            log.info("債券系統 - SSE 連線 {} 的所有追蹤任務均已完成。準備關閉 SSE 連線。", sseConnectionId);
-                            emitter.send(SseEmitter.event().name("ALL_TASKS_COMPLETED").data(
-                                    TaskEvent.builder()
-                                            .correlationId(sseConnectionId)
-                                            .status("ALL_TASKS_COMPLETED")
-                                            .message("所有為此SSE連線追蹤的債券任務已處理完畢")
-                                            .finalEvent(true)
-                                            .build()));
-                            emitter.complete();
-                        } else {
-                            log.info("債券系統 - SSE 連線 {} 尚有未完成的任務。追蹤: {}, 已完成: {}", sseConnectionId, trackedTaskIds,
-                                    completedTasks);
-                        }
-                    }
-                } else if (event.isFinalEvent()) {
-                    log.info("債券系統 - SSE 連線 {} 不追蹤特定任務列表或收到針對整個連線的 finalEvent。單任務 {} 完成，準備關閉 SSE 連線。", sseConnectionId,
-                            singleTaskId);
-                    emitter.complete();
+        synchronized (replayBuffer) {
+            // 事件只編碼一次，id 為連線內單調遞增的序號，客戶端重連時以 Last-Event-ID 帶回
+            List<TaskEvent> encodedEvents = new ArrayList<>(events.size());
+            List<PreEncodedSseEvent> frames = new ArrayList<>(events.size());
+            for (TaskEvent event : events) {
+                PreEncodedSseEvent frame;
+                try {
+                    frame = frameEncoder.encode(String.valueOf(replayBuffer.nextSequence()), event.getStatus(), event);
+                } catch (IOException e) {
+                    log.error("債券系統 - 編碼 SSE 連線 {} 的事件 {} 時出錯", sseConnectionId, event, e);
+                    continue;
                 }
-            } catch (IOException e) {
-                log.error("債券系統 - 向 SSE 連線 {} 發送事件 {} 時出錯: {}", sseConnectionId, event, e.getMessage(), e);
-            } catch (Exception e) {
-                log.error("債券系統 - 處理 SSE 連線 {} 的事件 {} 時發生意外錯誤: {}", sseConnectionId, event, e.getMessage(), e);
+                replayBuffer.append(event, frame);
+                encodedEvents.add(event);
+                frames.add(frame);
             }
-        } else {
-            log.warn("債券系統 - 找不到 SSE 連線 ID {} 對應的 SseEmitter。事件 {} 可能無法發送。", sseConnectionId, event);
+            if (frames.isEmpty()) {
+                return;
+            }
+            SseConnection connection = sseConnectionMap.get(sseConnectionId);
+            if (connection == null) {
+                log.debug("債券系統 - SSE 連線 {} 暫時中斷，{} 個事件已保留待重連時重播", sseConnectionId, frames.size());
+                return;
+            }
+            deliver(connection, encodedEvents, frames);
+        }
+    }
+
+    private void deliver(SseConnection connection, List<TaskEvent> events, List<PreEncodedSseEvent> frames) {
+        String sseConnectionId = connection.getId();
+        try {
+            log.debug("債券系統 - 向 SSE 連線 {} (Emitter: {}) 發送事件: {}", sseConnectionId, connection.getEmitter(), events);
+            // 監聽執行緒只放入待寫佇列，同一連線的事件合併成一次寫出；送達延遲在實際寫出後記錄。
+            // 客戶端落後時，同一任務尚未寫出的進度事件只保留最新一筆
+            List<String> conflationKeys = new ArrayList<>(events.size());
+            List<Runnable> onWritten = new ArrayList<>(events.size());
+            for (TaskEvent event : events) {
+                conflationKeys.add(writerPool.conflationKey(event));
+                onWritten.add(() -> metrics.recordDelivered(event));
+            }
+            connection.sendAll(frames, conflationKeys, onWritten);
+            if (eventLog.shouldLog(log)) {
+                log.info("債券系統 - 發送事件 sseConnectionId={} count={}", sseConnectionId, events.size());
+            }
+
+            // 檢查是否需要關閉 SSE 連線
+            boolean shouldClose = false;
+            for (TaskEvent event : events) {
+                if (event.isFinalEvent()) {
+                    shouldClose |= recordTaskCompletion(sseConnectionId, event.getCorrelationId());
+                }
+            }
+            if (shouldClose) {
+                completeConnection(connection);
+            }
+        } catch (IOException e) {
+            metrics.recordFailedSend(events.size());
+            log.error("債券系統 - 向 SSE 連線 {} 發送事件 {} 時出錯: {}", sseConnectionId, events, e.getMessage(), e);
+            // emitter.completeWithError(e); // onError 回調會處理清理
+        } catch (Exception e) {
+            log.error("債券系統 - 處理 SSE 連線 {} 的事件 {} 時發生意外錯誤: {}", sseConnectionId, events, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 記錄單任務的最終事件，回傳此 SSE 連線是否應該關閉。
+     */
+    private boolean recordTaskCompletion(String sseConnectionId, String singleTaskId) {
+        ConnectionTracker tracker = connectionTrackers.get(sseConnectionId);
+        if (tracker != null) {
+            // 此 SSE 連線正在追蹤一組任務，只有完成最後一個任務的事件會回傳 true
+            if (!tracker.isTracking(singleTaskId)) {
+                log.debug("債券系統 - 單任務 {} 不在 SSE 連線 {} 的追蹤清單中，不影響完成判斷", singleTaskId, sseConnectionId);
+                return false;
+            }
+            if (tracker.markCompleted(singleTaskId)) {
+                log.info("債券系統 - SSE 連線 {} 的所有追蹤任務 ({} 個) 均已完成。準備關閉 SSE 連線。",
+                        sseConnectionId, tracker.getTrackedCount());
+                return true;
+            }
+            log.debug("債券系統 - 單任務 {} (屬於 SSE 連線 {}) 已完成，尚有 {}/{} 個任務未完成",
+                    singleTaskId, sseConnectionId, tracker.getRemaining(), tracker.getTrackedCount());
+            return false;
+        }
+        // 此 SSE 連線不追蹤特定任務列表 (例如，舊的行為或 taskIds 為空)
+        // 或者這個事件的 finalEvent 是針對整個 SSE 連線的 (這需要前端/事件發布者明確指定)
+        log.info("債券系統 - SSE 連線 {} 不追蹤特定任務列表，或收到針對整個連線的 finalEvent。單任務 {} 完成，準備關閉 SSE 連線。", sseConnectionId,
+                singleTaskId);
+        return true;
+    }
+
+    private void completeConnection(SseConnection connection) throws IOException {
+        String sseConnectionId = connection.getId();
+        if (connectionTrackers.containsKey(sseConnectionId)) {
+            connection.send(allTasksCompletedTemplate.render(sseConnectionId));
         }
+        // 連線正常結束，不需要再保留重播緩衝區
+        replayStore.remove(sseConnectionId);
+        connection.complete();
     }
 }
\ No newline at end of file
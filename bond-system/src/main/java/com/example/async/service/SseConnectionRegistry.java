@@ -0,0 +1,105 @@
+package com.example.async.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * SSE 連線歸屬登記表。
+ * <p>
+ * 每個 pod 記錄自己持有的 SSE 連線 ID，並透過壓縮 (compacted) 的登記 topic 廣播歸屬資訊，
+ * 讓發布事件的一方能把事件直接送到持有連線的 pod 專屬 topic，而不是讓所有 pod 都消費一次。
+ * 查不到歸屬時退回共用的廣播 topic，行為與原本相同。
+ */
+@Service
+@Slf4j
+public class SseConnectionRegistry {
+    public static final String BROADCAST_TOPIC = "bond-events";
+    public static final String REGISTRY_TOPIC = "bond-connection-registry";
+
+    private final KafkaTemplate<String, String> registryKafkaTemplate;
+    private final String podId;
+    // 本 pod 持有的 SSE 連線
+    private final Set<String> ownedConnections = ConcurrentHashMap.newKeySet();
+    // 從登記 topic 得知的連線歸屬 (SSE 連線 ID -> pod ID)，包含本 pod
+    private final Map<String, String> connectionOwners = new ConcurrentHashMap<>();
+
+    public SseConnectionRegistry(@Qualifier("registryKafkaTemplate") KafkaTemplate<String, String> registryKafkaTemplate,
+                                 @Value("${app.pod-id}") String podId) {
+        this.registryKafkaTemplate = registryKafkaTemplate;
+        this.podId = podId;
+    }
+
+    public static String podTopic(String podId) {
+        return BROADCAST_TOPIC + "-" + podId;
+    }
+
+    public String getPodId() {
+        return podId;
+    }
+
+    public void register(String sseConnectionId) {
+        ownedConnections.add(sseConnectionId);
+        connectionOwners.put(sseConnectionId, podId);
+        registryKafkaTemplate.send(REGISTRY_TOPIC, sseConnectionId, podId);
+        log.info("債券系統 - SSE 連線 {} 已登記由 pod {} 持有", sseConnectionId, podId);
+    }
+
+    public void unregister(String sseConnectionId) {
+        if (ownedConnections.remove(sseConnectionId)) {
+            connectionOwners.remove(sseConnectionId, podId);
+            // 發送 tombstone，讓壓縮後的登記 topic 不再保留此連線
+            registryKafkaTemplate.send(REGISTRY_TOPIC, sseConnectionId, null);
+            log.info("債券系統 - SSE 連線 {} 已從 pod {} 的登記表移除", sseConnectionId, podId);
+        }
+    }
+
+    public boolean isOwnedLocally(String sseConnectionId) {
+        return ownedConnections.contains(sseConnectionId);
+    }
+
+    public String findOwner(String sseConnectionId) {
+        return sseConnectionId == null ? null : connectionOwners.get(sseConnectionId);
+    }
+
+    /**
+     * 決定事件應發送到哪個 topic：持有連線的 pod 專屬 topic，或歸屬未知時的廣播 topic。
+     */
+    public String resolveEventTopic(String sseConnectionId) {
+        String owner = findOwner(sseConnectionId);
+        return owner != null ? podTopic(owner) : BROADCAST_TOPIC;
+    }
+
+    /**
+     * 套用登記 topic 上的歸屬變更，ownerPodId 為 null 代表連線已關閉。
+     */
+    public void applyOwnership(String sseConnectionId, String ownerPodId) {
+        if (sseConnectionId == null) {
+            return;
+        }
+        if (ownerPodId == null) {
+            // 只有在本地沒有持有時才移除，避免舊 tombstone 覆蓋本 pod 剛建立的重連
+            if (!ownedConnections.contains(sseConnectionId)) {
+                connectionOwners.remove(sseConnectionId);
+            }
+        } else if (!podId.equals(ownerPodId) || ownedConnections.contains(sseConnectionId)) {
+            connectionOwners.put(sseConnectionId, ownerPodId);
+        }
+        log.debug("SSE 連線 {} 的歸屬更新為 {}", sseConnectionId, ownerPodId);
+    }
+
+    @PreDestroy
+    public void releaseAll() {
+        for (String sseConnectionId : ownedConnections) {
+            unregister(sseConnectionId);
+        }
+        registryKafkaTemplate.flush();
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.async.sse;
+
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.UnicastProcessor;
+import reactor.util.concurrent.Queues;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * WebFlux 模式下的一條 SSE 連線。對服務而言與一般的 SseEmitter 相同，但事件只放入連線自己的有界佇列，
+ * 由 WebFlux 依客戶端的消化速度非阻塞地寫出，Kafka 監聽執行緒不會被慢速客戶端卡住。
+ * <p>
+ * 佇列滿時視為客戶端跟不上，send 拋出 IOException 並結束連線，客戶端重連時以 Last-Event-ID 從重播緩衝區補齊。
+ * 此 emitter 不會交給 Spring MVC 處理，完成與錯誤回調由本類別自行保存並觸發。
+ */
+public class FluxSseEmitter extends SseEmitter {
+    private static final DefaultDataBufferFactory BUFFERS = new DefaultDataBufferFactory();
+
+    private final String connectionId;
+    private final UnicastProcessor<DataBuffer> sink;
+    private volatile boolean overflowed;
+    private final AtomicBoolean done = new AtomicBoolean();
+    private volatile Runnable completionCallback;
+    private volatile Consumer<Throwable> errorCallback;
+
+    public FluxSseEmitter(String connectionId, int bufferCapacity) {
+        super(Long.MAX_VALUE);
+        this.connectionId = connectionId;
+        this.sink = UnicastProcessor.create(Queues.<DataBuffer>get(bufferCapacity).get(), dropped -> overflowed = true, () -> {
+        });
+    }
+
+    /**
+     * 寫給客戶端的框架；客戶端斷線 (取消訂閱) 時結束連線並觸發清理。
+     */
+    public Flux<DataBuffer> getFrames() {
+        return sink.doFinally(signal -> terminate(null));
+    }
+
+    @Override
+    public void send(SseEventBuilder builder) throws IOException {
+        byte[] frame = PreEncodedSseEvent.toBytes(builder);
+        // 事件與心跳可能來自不同執行緒，UnicastProcessor 需要序列化的寫入
+        synchronized (this) {
+            if (done.get()) {
+                throw new IllegalStateException("SSE 連線 " + connectionId + " 已結束");
+            }
+            sink.onNext(BUFFERS.wrap(frame));
+        }
+        if (overflowed) {
+            IOException error = new IOException("SSE 連線 " + connectionId + " 的佇列已滿，客戶端跟不上事件速度");
+            terminate(error);
+            throw error;
+        }
+    }
+
+    @Override
+    public void complete() {
+        if (done.compareAndSet(false, true)) {
+            synchronized (this) {
+                sink.onComplete();
+            }
+            runCompletion();
+        }
+    }
+
+    @Override
+    public void completeWithError(Throwable ex) {
+        // 客戶端只需要知道連線已結束，重連時以 Last-Event-ID 補齊
+        complete();
+    }
+
+    @Override
+    public void onCompletion(Runnable callback) {
+        this.completionCallback = callback;
+    }
+
+    @Override
+    public void onError(Consumer<Throwable> callback) {
+        this.errorCallback = callback;
+    }
+
+    @Override
+    public void onTimeout(Runnable callback) {
+        // 連線沒有逾時，生命週期跟隨客戶端的回應串流
+    }
+
+    private void terminate(Throwable error) {
+        if (done.compareAndSet(false, true)) {
+            synchronized (this) {
+                sink.onComplete();
+            }
+            Consumer<Throwable> onError = errorCallback;
+            if (error != null && onError != null) {
+                onError.accept(error);
+            }
+            runCompletion();
+        }
+    }
+
+    private void runCompletion() {
+        Runnable callback = completionCallback;
+        if (callback != null) {
+            callback.run();
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.async.sse;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 以單一執行緒輪詢所有 SSE 連線的心跳掃描器。
+ * <p>
+ * 連線依 ID 雜湊分散到固定數量的 bucket，掃描器每 interval / buckets 處理一個 bucket，
+ * 因此每條連線每個心跳間隔只會被檢查一次，且一次只處理一批連線。
+ * 在本間隔內已有實際事件寫出的連線不需要額外心跳，會直接略過。
+ */
+@Component
+@Slf4j
+public class HeartbeatSweeper {
+    private final long intervalNanos;
+    private final long tickMillis;
+    private final Set<SseConnection>[] buckets;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "sse-heartbeat");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private int cursor;
+
+    @SuppressWarnings("unchecked")
+    public HeartbeatSweeper(@Value("${app.sse.heartbeat.interval-ms:10000}") long intervalMillis,
+                            @Value("${app.sse.heartbeat.buckets:10}") int bucketCount) {
+        this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+        this.tickMillis = Math.max(1, intervalMillis / bucketCount);
+        this.buckets = new Set[bucketCount];
+        for (int i = 0; i < bucketCount; i++) {
+            buckets[i] = ConcurrentHashMap.newKeySet();
+        }
+    }
+
+    @PostConstruct
+    public void start() {
+        log.info("債券系統 - 啟動心跳掃描器，心跳間隔: {}ms, bucket 數量: {}", TimeUnit.NANOSECONDS.toMillis(intervalNanos), buckets.length);
+        scheduler.scheduleAtFixedRate(this::sweepNextBucket, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdownNow();
+    }
+
+    public void register(SseConnection connection) {
+        bucketOf(connection.getId()).add(connection);
+    }
+
+    public void unregister(SseConnection connection) {
+        bucketOf(connection.getId()).remove(connection);
+    }
+
+    // 目前登記心跳的連線數
+    public int size() {
+        int size = 0;
+        for (Set<SseConnection> bucket : buckets) {
+            size += bucket.size();
+        }
+        return size;
+    }
+
+    private Set<SseConnection> bucketOf(String connectionId) {
+        return buckets[Math.floorMod(connectionId.hashCode(), buckets.length)];
+    }
+
+    private void sweepNextBucket() {
+        Set<SseConnection> bucket = buckets[cursor];
+        cursor = (cursor + 1) % buckets.length;
+        if (bucket.isEmpty()) {
+            return;
+        }
+
+        long now = System.nanoTime();
+        int sent = 0;
+        int skipped = 0;
+        for (SseConnection connection : bucket) {
+            if (!connection.isIdleFor(intervalNanos, now)) {
+                skipped++;
+                continue;
+            }
+            try {
+                connection.sendHeartbeat();
+                sent++;
+            } catch (IOException | IllegalStateException e) {
+                log.warn("債券系統 - 發送心跳到 SSE 連線 {} 時出錯，關閉連線: {}", connection.getId(), e.getMessage());
+                bucket.remove(connection);
+                connection.getEmitter().completeWithError(e);
+            } catch (Exception e) {
+                log.error("債券系統 - 發送心跳到 SSE 連線 {} 時發生意外錯誤", connection.getId(), e);
+            }
+        }
+        log.debug("債券系統 - 心跳掃描完成，已發送: {}, 略過 (本間隔已有事件): {}", sent, skipped);
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.async.sse;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * 本 pod SSE 連線表的上限與回收規則。
+ * <p>
+ * 連線數達到 max-connections 時新的訂閱立即被拒絕，並以 retry-after-seconds 提示客戶端稍後重試，
+ * 連線表與各連線的緩衝區因此有固定的上限。客戶端沒有正常關閉 TCP 就消失時，心跳寫入可能仍會成功一段時間，
+ * 回收執行緒每 reap-interval-ms 掃描一次連線表，一次結束超過 idle-timeout-ms 沒有任務事件
+ * 或存活超過 max-lifetime-ms 的連線；重播緩衝區仍會保留，客戶端若還在，可以用 Last-Event-ID 重連補齊。
+ * 仍有任務未完成的連線不做閒置檢查 (子任務可能長時間沒有事件)，但存活上限一律適用，
+ * 避免任務卡住時連線永遠留在表中；客戶端重連後仍可繼續收到這些任務的事件。
+ */
+@Component
+@Slf4j
+public class SseConnectionLimits {
+    private final int maxConnections;
+    private final long idleTimeoutNanos;
+    private final long maxLifetimeNanos;
+    private final long reapIntervalMillis;
+    private final long retryAfterSeconds;
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong reapedIdle = new AtomicLong();
+    private final AtomicLong reapedExpired = new AtomicLong();
+    private final ScheduledExecutorService reaper = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "sse-connection-reaper");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public SseConnectionLimits(@Value("${app.sse.limits.max-connections:10000}") int maxConnections,
+                               @Value("${app.sse.limits.idle-timeout-ms:900000}") long idleTimeoutMillis,
+                               @Value("${app.sse.limits.max-lifetime-ms:3600000}") long maxLifetimeMillis,
+                               @Value("${app.sse.limits.reap-interval-ms:30000}") long reapIntervalMillis,
+                               @Value("${app.sse.limits.retry-after-seconds:5}") long retryAfterSeconds) {
+        this.maxConnections = maxConnections;
+        this.idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(idleTimeoutMillis);
+        this.maxLifetimeNanos = TimeUnit.MILLISECONDS.toNanos(maxLifetimeMillis);
+        this.reapIntervalMillis = Math.max(1000, reapIntervalMillis);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    /**
+     * 由持有連線表的服務在啟動時呼叫，定期執行批次回收。
+     */
+    public void startReaper(Runnable reap) {
+        log.info("債券系統 - 啟動 SSE 連線回收，上限: {} 條，閒置上限: {}ms，存活上限: {}ms", maxConnections,
+                TimeUnit.NANOSECONDS.toMillis(idleTimeoutNanos), TimeUnit.NANOSECONDS.toMillis(maxLifetimeNanos));
+        reaper.scheduleWithFixedDelay(() -> {
+            try {
+                reap.run();
+            } catch (RuntimeException e) {
+                log.error("債券系統 - 回收 SSE 連線時出錯", e);
+            }
+        }, reapIntervalMillis, reapIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        reaper.shutdownNow();
+    }
+
+    /**
+     * 目前已有 openConnections 條連線時，是否還能接受新的訂閱；拒絕時計入被拒絕的訂閱數。
+     */
+    public boolean tryAdmit(int openConnections) {
+        if (maxConnections <= 0 || openConnections < maxConnections) {
+            return true;
+        }
+        rejected.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * 挑出應結束的連線：超過存活上限，或超過閒置上限沒有推送任務事件。上限設為 0 表示不檢查；
+     * hasPendingTasks 為 true 的連線還在等待任務的最終事件，只略過閒置檢查，存活上限照常適用。
+     */
+    public List<SseConnection> collectExpired(Collection<SseConnection> connections,
+                                              Predicate<SseConnection> hasPendingTasks) {
+        long now = System.nanoTime();
+        List<SseConnection> expired = new ArrayList<>();
+        for (SseConnection connection : connections) {
+            if (maxLifetimeNanos > 0 && connection.isOlderThan(maxLifetimeNanos, now)) {
+                reapedExpired.incrementAndGet();
+                expired.add(connection);
+            } else if (idleTimeoutNanos > 0 && connection.hasNoEventsFor(idleTimeoutNanos, now)
+                    && !hasPendingTasks.test(connection)) {
+                reapedIdle.incrementAndGet();
+                expired.add(connection);
+            }
+        }
+        return expired;
+    }
+
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    public long getReapedIdle() {
+        return reapedIdle.get();
+    }
+
+    public long getReapedExpired() {
+        return reapedExpired.get();
+    }
+}
@@ -0,0 +1,144 @@
+package com.example.async.sse;
+
+import com.example.async.model.TaskEvent;
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * 將 TaskEvent 直接編碼成完整的 SSE 框架位元組。
+ * <p>
+ * 每個事件只序列化一次：JSON 直接寫入執行緒共用的緩衝區，與 id/event 標頭組成單一 byte[]，
+ * 之後 (包含重播) 都以原始位元組寫出，不再經過 Spring 的訊息轉換器。
+ * CONNECTED、HEARTBEAT 等內容固定的事件只在 correlationId 上不同，使用 {@link Template} 預先編碼。
+ */
+@Component
+public class SseFrameEncoder {
+    private static final byte[] ID = "id:".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] EVENT = "event:".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] DATA = "data:".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] RETRY = "retry:".getBytes(StandardCharsets.UTF_8);
+    private static final String PLACEHOLDER = "__SSE_CONNECTION_ID__";
+    private static final int MAX_RETAINED_BUFFER = 64 * 1024;
+
+    private final ObjectMapper objectMapper;
+    private final ThreadLocal<FrameBuffer> buffers = ThreadLocal.withInitial(FrameBuffer::new);
+
+    public SseFrameEncoder(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    public PreEncodedSseEvent encode(String id, String eventName, TaskEvent event) throws IOException {
+        FrameBuffer buffer = buffers.get();
+        buffer.reset();
+        if (id != null) {
+            buffer.write(ID);
+            buffer.writeAscii(id);
+            buffer.write('\n');
+        }
+        buffer.write(EVENT);
+        buffer.writeAscii(eventName);
+        buffer.write('\n');
+        buffer.write(DATA);
+        objectMapper.writeValue(buffer, event);
+        buffer.write('\n');
+        buffer.write('\n');
+        PreEncodedSseEvent frame = new PreEncodedSseEvent(buffer.toByteArray());
+        buffer.trim();
+        return frame;
+    }
+
+    /**
+     * 為內容固定、只有 correlationId 不同的事件建立預先編碼的範本。
+     */
+    public Template template(String eventName, TaskEvent prototype, Long reconnectTimeMillis) throws IOException {
+        TaskEvent placeholder = TaskEvent.builder()
+                .correlationId(PLACEHOLDER)
+                .status(prototype.getStatus())
+                .message(prototype.getMessage())
+                .result(prototype.getResult())
+                .finalEvent(prototype.isFinalEvent())
+                .build();
+        byte[] frame = encode(null, eventName, placeholder).getFrame();
+        if (reconnectTimeMillis != null) {
+            // retry 欄位放在空行之前
+            byte[] retry = ("retry:" + reconnectTimeMillis + "\n\n").getBytes(StandardCharsets.UTF_8);
+            byte[] withRetry = Arrays.copyOf(frame, frame.length - 1 + retry.length);
+            System.arraycopy(retry, 0, withRetry, frame.length - 1, retry.length);
+            frame = withRetry;
+        }
+        int at = indexOf(frame, PLACEHOLDER.getBytes(StandardCharsets.UTF_8));
+        if (at < 0) {
+            throw new IllegalStateException("無法在 " + eventName + " 範本中找到 correlationId 位置");
+        }
+        return new Template(Arrays.copyOfRange(frame, 0, at),
+                Arrays.copyOfRange(frame, at + PLACEHOLDER.length(), frame.length));
+    }
+
+    private static int indexOf(byte[] source, byte[] target) {
+        outer:
+        for (int i = 0; i <= source.length - target.length; i++) {
+            for (int j = 0; j < target.length; j++) {
+                if (source[i + j] != target[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    /**
+     * 預先編碼的事件範本：prefix + JSON 跳脫後的 correlationId + suffix。
+     */
+    public static final class Template {
+        private final byte[] prefix;
+        private final byte[] suffix;
+
+        private Template(byte[] prefix, byte[] suffix) {
+            this.prefix = prefix;
+            this.suffix = suffix;
+        }
+
+        public PreEncodedSseEvent render(String correlationId) {
+            byte[] id = JsonStringEncoder.getInstance().quoteAsUTF8(correlationId);
+            byte[] frame = new byte[prefix.length + id.length + suffix.length];
+            System.arraycopy(prefix, 0, frame, 0, prefix.length);
+            System.arraycopy(id, 0, frame, prefix.length, id.length);
+            System.arraycopy(suffix, 0, frame, prefix.length + id.length, suffix.length);
+            return new PreEncodedSseEvent(frame);
+        }
+    }
+
+    /**
+     * 每個執行緒重用的組裝緩衝區，避免每個事件都配置新的中間陣列。
+     */
+    private static final class FrameBuffer extends ByteArrayOutputStream {
+        private FrameBuffer() {
+            super(1024);
+        }
+
+        private void writeAscii(String value) {
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                write(c < 0x80 ? c : '?');
+            }
+        }
+
+        @Override
+        public void close() {
+            // Jackson 寫完會關閉輸出串流，緩衝區需保持可用
+        }
+
+        private void trim() {
+            if (buf.length > MAX_RETAINED_BUFFER) {
+                buf = new byte[1024];
+            }
+        }
+    }
+}
@@ -0,0 +1,275 @@
+package com.example.async.sse;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * 單一 SSE 連線的有界待寫佇列，由 {@link SseWriterPool} 的寫出執行緒排空。
+ * <p>
+ * 同一連線同時最多只有一個排空工作，框架依放入順序寫出；排空時佇列中的框架合併成一次寫入。
+ * 啟用進度事件合併時，同一任務尚未寫出的進度事件只保留最新一筆：新的框架直接覆寫佇列中的那一筆，保留原本的位置，
+ * 合併為 O(1)，落後的客戶端追上時只需一次寫出最新狀態。覆寫後同一批寫出的 SSE id 可能不遞增，客戶端記錄的
+ * Last-Event-ID 因此可能偏小，重連時只會重複收到事件而不會遺漏；最終事件與其他沒有合併鍵的框架不會被合併或丟棄。
+ * 佇列滿時依 {@link SseOverflowPolicy} 處理。連線被中止 (溢出斷線、寫入逾時或寫入失敗) 時立即呼叫 onAbort 清理路由，
+ * emitter 則由排空工作在目前的寫入結束後才結束，呼叫端不會被卡住的寫入拖住。
+ */
+final class SseOutboundQueue {
+    private final SseConnection connection;
+    private final SseWriterPool pool;
+    private final Consumer<SseConnection> onAbort;
+    private final ArrayDeque<Outgoing> frames = new ArrayDeque<>();
+    // 合併鍵 (任務 ID) -> 佇列中該任務尚未寫出的進度事件，合併時直接覆寫其內容
+    private final Map<String, Outgoing> latestProgress = new HashMap<>();
+    private int queuedBytes;
+    // 已提交排空工作 (包含寫入中)
+    private boolean scheduled;
+    // 寫完佇列後正常結束連線
+    private boolean closing;
+    private Throwable abortCause;
+    // emitter 已結束
+    private boolean finished;
+    private volatile long writeStartedNanos;
+
+    SseOutboundQueue(SseConnection connection, SseWriterPool pool, Consumer<SseConnection> onAbort) {
+        this.connection = connection;
+        this.pool = pool;
+        this.onAbort = onAbort;
+    }
+
+    String getConnectionId() {
+        return connection.getId();
+    }
+
+    /**
+     * 放入一個框架，onWritten 在框架實際寫出後於寫出執行緒上呼叫，可為 null。
+     */
+    void offer(byte[] frame, Runnable onWritten) {
+        offerAll(Collections.singletonList(frame), Collections.singletonList(null), Collections.singletonList(onWritten));
+    }
+
+    /**
+     * 在同一次鎖定內放入一組框架，排空時會合併成一次寫出。conflationKeys 為各框架的合併鍵，null 表示不可合併。
+     */
+    void offerAll(List<byte[]> newFrames, List<String> conflationKeys, List<Runnable> callbacks) {
+        boolean schedule = false;
+        boolean disconnect = false;
+        synchronized (this) {
+            if (closing || abortCause != null) {
+                return;
+            }
+            for (int i = 0; i < newFrames.size() && !disconnect; i++) {
+                disconnect = !enqueue(newFrames.get(i), conflationKeys.get(i), callbacks.get(i));
+            }
+            if (!disconnect && !frames.isEmpty()) {
+                schedule = !scheduled;
+                scheduled = true;
+            }
+        }
+        if (disconnect) {
+            pool.recordOverflowDisconnect();
+            abort(new IOException("SSE 連線 " + connection.getId() + " 的待寫佇列已滿，客戶端跟不上事件速度"));
+        } else if (schedule) {
+            pool.execute(this::drain);
+        }
+    }
+
+    // 有框架等待或正在寫出
+    synchronized boolean isBusy() {
+        return scheduled;
+    }
+
+    /**
+     * 寫完目前佇列中的框架後結束連線。
+     */
+    void close() {
+        boolean schedule;
+        synchronized (this) {
+            if (closing || abortCause != null) {
+                return;
+            }
+            closing = true;
+            schedule = !scheduled;
+            scheduled = true;
+        }
+        if (schedule) {
+            pool.execute(this::drain);
+        }
+    }
+
+    /**
+     * 丟棄佇列並結束連線。
+     */
+    void abort(Throwable cause) {
+        boolean schedule;
+        synchronized (this) {
+            if (abortCause != null || finished) {
+                return;
+            }
+            abortCause = cause;
+            discard();
+            schedule = !scheduled;
+            scheduled = true;
+        }
+        onAbort.accept(connection);
+        if (schedule) {
+            pool.execute(this::drain);
+        }
+    }
+
+    boolean isWriteStalled(long timeoutNanos, long nowNanos) {
+        long started = writeStartedNanos;
+        return started != 0 && nowNanos - started >= timeoutNanos;
+    }
+
+    private void drain() {
+        while (true) {
+            Outgoing batch = null;
+            Throwable abort;
+            synchronized (this) {
+                abort = abortCause;
+                if (abort == null && !frames.isEmpty()) {
+                    batch = takeAll();
+                } else {
+                    scheduled = false;
+                    discard();
+                    if (finished || (abort == null && !closing)) {
+                        return;
+                    }
+                    finished = true;
+                }
+            }
+            if (batch == null) {
+                finish(abort);
+                return;
+            }
+            write(batch);
+        }
+    }
+
+    private void write(Outgoing batch) {
+        writeStartedNanos = System.nanoTime();
+        pool.beginWrite(this);
+        try {
+            connection.write(batch.frame);
+            if (batch.onWritten != null) {
+                batch.onWritten.run();
+            }
+        } catch (IOException | IllegalStateException e) {
+            pool.recordWriteFailure();
+            abort(e);
+        } finally {
+            writeStartedNanos = 0;
+            pool.endWrite(this);
+        }
+    }
+
+    private void finish(Throwable abort) {
+        try {
+            if (abort == null) {
+                connection.getEmitter().complete();
+            } else {
+                connection.getEmitter().completeWithError(abort);
+            }
+        } catch (IllegalStateException e) {
+            // 客戶端已離開，emitter 已經結束
+        }
+    }
+
+    // 以下方法需持有本物件的鎖
+
+    /**
+     * 回傳 false 表示佇列已滿且依溢出策略必須斷線。
+     */
+    private boolean enqueue(byte[] frame, String conflationKey, Runnable onWritten) {
+        if (conflationKey != null) {
+            Outgoing pending = latestProgress.get(conflationKey);
+            if (pending != null) {
+                queuedBytes += frame.length - pending.frame.length;
+                pending.frame = frame;
+                pending.onWritten = onWritten;
+                pool.recordConflated();
+                return true;
+            }
+        }
+        if (frames.size() >= pool.getQueueCapacity()) {
+            SseOverflowPolicy policy = pool.getOverflowPolicy();
+            if (policy == SseOverflowPolicy.DROP && (conflationKey != null || !pool.isConflateProgress())) {
+                // 啟用合併時只丟棄進度事件，最終事件放不下時改為斷線
+                pool.recordDropped();
+                return true;
+            }
+            if (policy == SseOverflowPolicy.COALESCE && queuedBytes + frame.length <= pool.getCoalesceMaxBytes()) {
+                coalesce();
+            } else {
+                return false;
+            }
+        }
+        Outgoing entry = new Outgoing(frame, onWritten);
+        frames.addLast(entry);
+        queuedBytes += frame.length;
+        pool.queued(1);
+        if (conflationKey != null) {
+            latestProgress.put(conflationKey, entry);
+        }
+        return true;
+    }
+
+    private Outgoing takeAll() {
+        int count = frames.size();
+        Outgoing batch = count == 1 ? frames.pollFirst() : join(count);
+        pool.queued(-count);
+        queuedBytes = 0;
+        latestProgress.clear();
+        return batch;
+    }
+
+    private void coalesce() {
+        int count = frames.size();
+        frames.addFirst(join(count));
+        latestProgress.clear();
+        pool.queued(1 - count);
+        pool.recordCoalesced(count);
+    }
+
+    private Outgoing join(int count) {
+        byte[] joined = new byte[queuedBytes];
+        Runnable[] callbacks = new Runnable[count];
+        int offset = 0;
+        for (int i = 0; i < count; i++) {
+            Outgoing next = frames.pollFirst();
+            System.arraycopy(next.frame, 0, joined, offset, next.frame.length);
+            offset += next.frame.length;
+            callbacks[i] = next.onWritten;
+        }
+        return new Outgoing(joined, () -> {
+            for (Runnable callback : callbacks) {
+                if (callback != null) {
+                    callback.run();
+                }
+            }
+        });
+    }
+
+    private void discard() {
+        pool.queued(-frames.size());
+        frames.clear();
+        latestProgress.clear();
+        queuedBytes = 0;
+    }
+
+    private static final class Outgoing {
+        // 進度事件合併時在持有佇列鎖的情況下覆寫
+        private byte[] frame;
+        private Runnable onWritten;
+
+        private Outgoing(byte[] frame, Runnable onWritten) {
+            this.frame = frame;
+            this.onWritten = onWritten;
+        }
+    }
+}
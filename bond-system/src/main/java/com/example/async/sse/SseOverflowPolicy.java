@@ -0,0 +1,25 @@
+package com.example.async.sse;
+
+import java.util.Locale;
+
+/**
+ * SSE 連線的待寫佇列已滿 (客戶端跟不上) 時的處理方式。
+ */
+public enum SseOverflowPolicy {
+    /**
+     * 丟棄放不下的框架，連線保持開啟；遺漏的事件仍在重播緩衝區，客戶端重連時可以補齊。
+     */
+    DROP,
+    /**
+     * 把佇列中的框架合併成一次寫出，佇列只佔一格；合併後超過位元組上限時改為斷線。
+     */
+    COALESCE,
+    /**
+     * 立即結束連線，客戶端以 Last-Event-ID 重連並從重播緩衝區補齊。
+     */
+    DISCONNECT;
+
+    public static SseOverflowPolicy of(String value) {
+        return valueOf(value.trim().toUpperCase(Locale.ROOT));
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.async.sse;
+
+import com.example.async.model.TaskEvent;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 單一 SSE 連線的事件重播環形緩衝區。
+ * <p>
+ * 每個事件附上連線內單調遞增的序號 (即 SSE 的 id)，客戶端重連時帶上 Last-Event-ID，
+ * 就能只重播缺少的尾段。緩衝區同時受容量與存活時間限制，最舊的事件會先被覆蓋或淘汰。
+ * 事件以編碼好的 SSE 框架保存，重播時直接寫出，不需要重新序列化。
+ * 對緩衝區的追加與發送需在此物件上同步，以保證同一連線的事件順序。
+ */
+public class SseReplayBuffer {
+    private final Entry[] entries;
+    private final long ttlNanos;
+    private long nextSequence = 1;
+    private int head; // 最舊事件的位置
+    private int size;
+    private volatile boolean attached;
+    private volatile long lastTouchedNanos = System.nanoTime();
+
+    public SseReplayBuffer(int capacity, long ttlNanos) {
+        this.entries = new Entry[capacity];
+        this.ttlNanos = ttlNanos;
+    }
+
+    /**
+     * 下一個事件將取得的序號；呼叫端需在同一把鎖內接著呼叫 append，序號才會一致。
+     */
+    public synchronized long nextSequence() {
+        return nextSequence;
+    }
+
+    /**
+     * 追加已編碼 (id 為 nextSequence()) 的事件框架，回傳其序號。
+     */
+    public synchronized long append(TaskEvent event, PreEncodedSseEvent frame) {
+        long now = System.nanoTime();
+        long sequence = nextSequence++;
+        int tail = (head + size) % entries.length;
+        entries[tail] = new Entry(sequence, now, event, frame);
+        if (size < entries.length) {
+            size++;
+        } else {
+            head = (head + 1) % entries.length;
+        }
+        lastTouchedNanos = now;
+        return sequence;
+    }
+
+    /**
+     * 回傳序號大於 lastSequence 且尚未過期的事件，依序號排列。
+     */
+    public synchronized List<Entry> since(long lastSequence) {
+        evictExpired(System.nanoTime());
+        List<Entry> result = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            Entry entry = entries[(head + i) % entries.length];
+            if (entry.getSequence() > lastSequence) {
+                result.add(entry);
+            }
+        }
+        return result;
+    }
+
+    public synchronized List<Entry> snapshot() {
+        return since(0);
+    }
+
+    private void evictExpired(long now) {
+        while (size > 0 && now - entries[head].getTimestampNanos() > ttlNanos) {
+            entries[head] = null;
+            head = (head + 1) % entries.length;
+            size--;
+        }
+    }
+
+    public boolean isAttached() {
+        return attached;
+    }
+
+    public void setAttached(boolean attached) {
+        this.attached = attached;
+        this.lastTouchedNanos = System.nanoTime();
+    }
+
+    /**
+     * 連線已中斷且超過存活時間沒有新事件，可整個移除。
+     */
+    public boolean isExpired(long nowNanos) {
+        return !attached && nowNanos - lastTouchedNanos > ttlNanos;
+    }
+
+    public static final class Entry {
+        private final long sequence;
+        private final long timestampNanos;
+        private final TaskEvent event;
+        private final PreEncodedSseEvent frame;
+
+        private Entry(long sequence, long timestampNanos, TaskEvent event, PreEncodedSseEvent frame) {
+            this.sequence = sequence;
+            this.timestampNanos = timestampNanos;
+            this.event = event;
+            this.frame = frame;
+        }
+
+        public long getSequence() {
+            return sequence;
+        }
+
+        public long getTimestampNanos() {
+            return timestampNanos;
+        }
+
+        public TaskEvent getEvent() {
+            return event;
+        }
+
+        public PreEncodedSseEvent getFrame() {
+            return frame;
+        }
+    }
+}
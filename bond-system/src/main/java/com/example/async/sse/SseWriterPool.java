@@ -0,0 +1,228 @@
+package com.example.async.sse;
+
+import com.example.async.model.TaskEvent;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * 排空各 SSE 連線待寫佇列 (見 {@link SseOutboundQueue}) 的寫出執行緒池。
+ * <p>
+ * Kafka 監聽執行緒只把框架放入佇列，實際的 socket 寫入都在這裡進行，單一客戶端的 TCP 送出緩衝區滿了
+ * 只會卡住一個寫出執行緒，不會拖慢其他連線或讓 consumer 超過 max.poll.interval.ms。
+ * 監視執行緒定期檢查寫入中的連線，超過 writeTimeout 仍未寫完的連線立即中止：清理路由並丟棄待寫佇列。
+ * <p>
+ * 監視執行緒無法中斷阻塞中的 socket 寫入 (emitter 在寫入期間持有自己的鎖，從其他執行緒結束 emitter 也會被卡住；
+ * 容器關閉 socket 也不會喚醒等待中的寫入)，寫出執行緒要等容器自身的寫入逾時讓 send 丟出例外後才會釋放。
+ * 這個逾時在 Tomcat 是全域的 server.tomcat.connection-timeout (同時是讀取與 keep-alive 逾時)，因此不為 SSE 調整，
+ * 改由監視執行緒在判定寫入卡住時為寫出池補上一條執行緒，寫入結束後再收回，其餘連線的寫出不必等卡住的客戶端；
+ * 同時補上的執行緒最多 maxStalledWriters 條，超過時其餘連線才會排隊。
+ */
+@Component
+@Slf4j
+public class SseWriterPool {
+    private static final Set<String> FINAL_STATUSES = new HashSet<>(Arrays.asList("COMPLETED", "FAILED", "ALL_TASKS_COMPLETED"));
+
+    @Getter
+    private final int queueCapacity;
+    @Getter
+    private final SseOverflowPolicy overflowPolicy;
+    @Getter
+    private final int coalesceMaxBytes;
+    @Getter
+    private final boolean conflateProgress;
+    private final long writeTimeoutNanos;
+    private final int writerThreads;
+    private final int maxStalledWriters;
+    private final ThreadPoolExecutor writers;
+    private final ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "sse-write-watchdog");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // 目前有寫入進行中的佇列，監視執行緒只需檢查這些
+    private final Set<SseOutboundQueue> writing = ConcurrentHashMap.newKeySet();
+    // 寫入卡住且已為其補上寫出執行緒的佇列
+    private final Set<SseOutboundQueue> stalled = ConcurrentHashMap.newKeySet();
+
+    private final AtomicInteger queuedFrames = new AtomicInteger();
+    private final AtomicLong droppedFrames = new AtomicLong();
+    private final AtomicLong coalescedFrames = new AtomicLong();
+    private final AtomicLong conflatedFrames = new AtomicLong();
+    private final AtomicLong overflowDisconnects = new AtomicLong();
+    private final AtomicLong writeTimeouts = new AtomicLong();
+    private final AtomicLong writeFailures = new AtomicLong();
+
+    public SseWriterPool(@Value("${app.sse.outbound.writer-threads:16}") int writerThreads,
+                         @Value("${app.sse.outbound.queue-capacity:1024}") int queueCapacity,
+                         @Value("${app.sse.outbound.overflow-policy:disconnect}") String overflowPolicy,
+                         @Value("${app.sse.outbound.coalesce-max-bytes:1048576}") int coalesceMaxBytes,
+                         @Value("${app.sse.outbound.write-timeout-ms:5000}") long writeTimeoutMillis,
+                         @Value("${app.sse.outbound.conflate-progress:true}") boolean conflateProgress,
+                         @Value("${app.sse.outbound.max-stalled-writers:64}") int maxStalledWriters) {
+        this.writerThreads = writerThreads;
+        this.maxStalledWriters = Math.max(0, maxStalledWriters);
+        this.queueCapacity = Math.max(1, queueCapacity);
+        this.overflowPolicy = SseOverflowPolicy.of(overflowPolicy);
+        this.coalesceMaxBytes = coalesceMaxBytes;
+        this.conflateProgress = conflateProgress;
+        this.writeTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(writeTimeoutMillis);
+        AtomicInteger sequence = new AtomicInteger();
+        this.writers = new ThreadPoolExecutor(writerThreads, writerThreads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), r -> {
+            Thread thread = new Thread(r, "sse-writer-" + sequence.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PostConstruct
+    public void start() {
+        long periodMillis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(writeTimeoutNanos) / 2);
+        log.info("債券系統 - 啟動 SSE 寫出執行緒池，執行緒數: {}, 佇列容量: {}, 溢出策略: {}, 寫入逾時: {}ms, 合併進度事件: {}",
+                writerThreads, queueCapacity, overflowPolicy, TimeUnit.NANOSECONDS.toMillis(writeTimeoutNanos), conflateProgress);
+        watchdog.scheduleAtFixedRate(this::checkStalledWrites, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        watchdog.shutdownNow();
+        writers.shutdownNow();
+    }
+
+    /**
+     * 事件在待寫佇列中的合併鍵：非最終的進度事件以任務 ID 合併，只保留最新一筆；最終事件與停用合併時回傳 null。
+     */
+    public String conflationKey(TaskEvent event) {
+        if (!conflateProgress || event.isFinalEvent() || FINAL_STATUSES.contains(event.getStatus())) {
+            return null;
+        }
+        return event.getCorrelationId();
+    }
+
+    SseOutboundQueue newQueue(SseConnection connection, Consumer<SseConnection> onAbort) {
+        return new SseOutboundQueue(connection, this, onAbort);
+    }
+
+    void execute(Runnable drain) {
+        writers.execute(drain);
+    }
+
+    void beginWrite(SseOutboundQueue queue) {
+        writing.add(queue);
+    }
+
+    void endWrite(SseOutboundQueue queue) {
+        writing.remove(queue);
+        if (stalled.remove(queue)) {
+            resizeWriters(-1);
+        }
+    }
+
+    private void checkStalledWrites() {
+        long now = System.nanoTime();
+        for (SseOutboundQueue queue : writing) {
+            if (queue.isWriteStalled(writeTimeoutNanos, now)) {
+                writing.remove(queue);
+                writeTimeouts.incrementAndGet();
+                log.warn("債券系統 - SSE 連線 {} 寫入超過 {}ms 未完成，結束連線", queue.getConnectionId(),
+                        TimeUnit.NANOSECONDS.toMillis(writeTimeoutNanos));
+                queue.abort(new IOException("SSE 連線 " + queue.getConnectionId() + " 寫入逾時"));
+                if (stalled.size() < maxStalledWriters && stalled.add(queue)) {
+                    resizeWriters(1);
+                    // 寫入可能剛好在這之間結束，endWrite 沒看到這筆補償時在此收回
+                    if (!queue.isWriteStalled(writeTimeoutNanos, System.nanoTime()) && stalled.remove(queue)) {
+                        resizeWriters(-1);
+                    }
+                }
+            }
+        }
+    }
+
+    // 調整寫出池大小：擴大時先調高上限，縮小時先調低核心數，多出的執行緒閒置後結束
+    private synchronized void resizeWriters(int delta) {
+        int size = writers.getCorePoolSize() + delta;
+        if (delta > 0) {
+            writers.setMaximumPoolSize(size);
+            writers.setCorePoolSize(size);
+        } else {
+            writers.setCorePoolSize(size);
+            writers.setMaximumPoolSize(size);
+        }
+    }
+
+    void queued(int delta) {
+        queuedFrames.addAndGet(delta);
+    }
+
+    void recordDropped() {
+        droppedFrames.incrementAndGet();
+    }
+
+    void recordCoalesced(int frames) {
+        coalescedFrames.addAndGet(frames);
+    }
+
+    void recordConflated() {
+        conflatedFrames.incrementAndGet();
+    }
+
+    void recordOverflowDisconnect() {
+        overflowDisconnects.incrementAndGet();
+    }
+
+    void recordWriteFailure() {
+        writeFailures.incrementAndGet();
+    }
+
+    // 所有連線佇列中等待寫出的框架數
+    public int getQueuedFrames() {
+        return queuedFrames.get();
+    }
+
+    public long getDroppedFrames() {
+        return droppedFrames.get();
+    }
+
+    public long getCoalescedFrames() {
+        return coalescedFrames.get();
+    }
+
+    public long getConflatedFrames() {
+        return conflatedFrames.get();
+    }
+
+    public long getOverflowDisconnects() {
+        return overflowDisconnects.get();
+    }
+
+    public long getWriteTimeouts() {
+        return writeTimeouts.get();
+    }
+
+    public long getWriteFailures() {
+        return writeFailures.get();
+    }
+
+    // 寫入卡住、已補上寫出執行緒的連線數
+    public int getStalledWriters() {
+        return stalled.size();
+    }
+}
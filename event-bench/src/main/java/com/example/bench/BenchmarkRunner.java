@@ -0,0 +1,34 @@
+package com.example.bench;
+
+import org.openjdk.jmh.Main;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * benchmarks.jar 的進入點：參數原樣交給 JMH，但預設以 JSON 輸出結果到 jmh-result.json，
+ * 方便保存每次執行的結果並比對回歸。可用 -rf / -rff 覆寫。
+ * <pre>
+ * java -jar target/benchmarks.jar                       # 全部基準測試
+ * java -jar target/benchmarks.jar IdExtraction -rff a.json
+ * </pre>
+ */
+public final class BenchmarkRunner {
+
+    private BenchmarkRunner() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        List<String> options = new ArrayList<>(Arrays.asList(args));
+        if (!options.contains("-rf")) {
+            options.add("-rf");
+            options.add("json");
+        }
+        if (!options.contains("-rff")) {
+            options.add("-rff");
+            options.add("jmh-result.json");
+        }
+        Main.main(options.toArray(new String[0]));
+    }
+}
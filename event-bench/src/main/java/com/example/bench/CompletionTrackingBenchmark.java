@@ -0,0 +1,90 @@
+package com.example.bench;
+
+import com.example.async.sse.ConnectionTracker;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 一條 SSE 連線從第一個到最後一個任務完成的追蹤成本。
+ * <p>
+ * containsAll 保留 TaskService 過去的做法作為基準：sseConnectionTaskIdsMap 存 List，
+ * sseConnectionCompletedTasksMap 存 HashSet，每個 finalEvent 都以雙向 containsAll 檢查是否全部完成。
+ * connectionTracker 為目前使用的 ConnectionTracker。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompletionTrackingBenchmark {
+    private static final String SSE_CONNECTION_ID = "3f2b8c1e-6a4d-4f7e-9c0b-2d5e8a1f4b7c-fund";
+
+    @Param({"10", "100", "1000"})
+    private int taskCount;
+
+    private List<String> taskIds;
+    private final Map<String, List<String>> sseConnectionTaskIdsMap = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> sseConnectionCompletedTasksMap = new ConcurrentHashMap<>();
+
+    @Setup
+    public void setUp() {
+        taskIds = new ArrayList<>(taskCount);
+        for (int i = 0; i < taskCount; i++) {
+            taskIds.add(SSE_CONNECTION_ID + "-" + i);
+        }
+    }
+
+    @Benchmark
+    public int connectionTracker() {
+        ConnectionTracker tracker = new ConnectionTracker(taskIds);
+        int closes = 0;
+        for (String taskId : taskIds) {
+            if (tracker.markCompleted(taskId)) {
+                closes++;
+            }
+        }
+        return closes;
+    }
+
+    @Benchmark
+    public int containsAll() {
+        sseConnectionTaskIdsMap.put(SSE_CONNECTION_ID, new ArrayList<>(taskIds));
+        sseConnectionCompletedTasksMap.remove(SSE_CONNECTION_ID);
+        int closes = 0;
+        for (String taskId : taskIds) {
+            if (recordTaskCompletion(SSE_CONNECTION_ID, taskId)) {
+                closes++;
+            }
+        }
+        return closes;
+    }
+
+    private boolean recordTaskCompletion(String sseConnectionId, String singleTaskId) {
+        List<String> trackedTaskIds = sseConnectionTaskIdsMap.get(sseConnectionId);
+        if (trackedTaskIds != null && !trackedTaskIds.isEmpty()) {
+            Set<String> completedTasks = sseConnectionCompletedTasksMap.computeIfAbsent(sseConnectionId,
+                    k -> new HashSet<>());
+            completedTasks.add(singleTaskId);
+            return completedTasks.containsAll(trackedTaskIds) && trackedTaskIds.containsAll(completedTasks);
+        }
+        return true;
+    }
+}
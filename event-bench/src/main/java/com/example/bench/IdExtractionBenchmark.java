@@ -0,0 +1,66 @@
+package com.example.bench;
+
+import com.example.async.model.TaskCorrelationId;
+import com.example.async.model.TaskEvent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 從單任務 ID 取出 SSE 連線 ID 的成本，每個 Kafka 事件都會執行一次。
+ * <p>
+ * sseConnectionIdExtractorPattern 保留 TaskService 過去逐筆使用的正則表達式作為基準，
+ * 對照發布端的 TaskCorrelationId 解析與消費端直接讀取事件欄位。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IdExtractionBenchmark {
+    private static final Pattern SSE_CONNECTION_ID_EXTRACTOR_PATTERN = Pattern.compile("^(.*)-[^-]+$");
+
+    @Param({"3f2b8c1e-6a4d-4f7e-9c0b-2d5e8a1f4b7c-fund-7"})
+    private String singleTaskId;
+
+    private TaskEvent stampedEvent;
+
+    @Setup
+    public void setUp() {
+        TaskCorrelationId parsed = TaskCorrelationId.parse(singleTaskId);
+        stampedEvent = TaskEvent.builder()
+                .correlationId(singleTaskId)
+                .sseConnectionId(parsed.getSseConnectionId())
+                .taskIndex(parsed.getTaskIndex())
+                .build();
+    }
+
+    @Benchmark
+    public String sseConnectionIdExtractorPattern() {
+        Matcher matcher = SSE_CONNECTION_ID_EXTRACTOR_PATTERN.matcher(singleTaskId);
+        return matcher.matches() ? matcher.group(1) : singleTaskId;
+    }
+
+    @Benchmark
+    public TaskCorrelationId parseCorrelationId() {
+        return TaskCorrelationId.parse(singleTaskId);
+    }
+
+    @Benchmark
+    public String readSseConnectionIdField() {
+        return stampedEvent.getSseConnectionId();
+    }
+}
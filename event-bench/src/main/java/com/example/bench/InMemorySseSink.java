@@ -0,0 +1,146 @@
+package com.example.bench;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.ByteArrayHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.StringHttpMessageConverter;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 模擬 Spring MVC 寫出 SseEmitter 事件的方式：每個 DataWithMediaType 依序挑選第一個可寫的
+ * HttpMessageConverter 寫入回應，並計算 flush 次數，只是輸出目的地換成記憶體緩衝區。
+ * <p>
+ * 緩衝區大小固定，寫到尾端時從頭覆寫，基準測試不需要在每次呼叫之間清空，記憶體用量也不會隨迭代成長。
+ */
+public class InMemorySseSink implements HttpOutputMessage {
+    private static final int CAPACITY = 64 * 1024;
+
+    private final List<HttpMessageConverter<?>> converters;
+    private final HttpHeaders headers = new HttpHeaders();
+    private final RewindingOutputStream body = new RewindingOutputStream(CAPACITY);
+    private int flushes;
+
+    public InMemorySseSink(ObjectMapper objectMapper) {
+        this.converters = Arrays.asList(
+                new ByteArrayHttpMessageConverter(),
+                new StringHttpMessageConverter(StandardCharsets.UTF_8),
+                new MappingJackson2HttpMessageConverter(objectMapper));
+    }
+
+    public void send(Set<ResponseBodyEmitter.DataWithMediaType> items) throws IOException {
+        for (ResponseBodyEmitter.DataWithMediaType item : items) {
+            send(item.getData(), item.getMediaType());
+        }
+    }
+
+    /**
+     * 對應 ResponseBodyEmitter.Handler#send：寫出一筆資料後 flush。
+     */
+    public void send(Object data, MediaType mediaType) throws IOException {
+        write(data, mediaType);
+        flushes++;
+    }
+
+    // 資料經由其他路徑寫入 getBody() 時，由呼叫端記錄 flush
+    public void recordFlush() {
+        flushes++;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void write(Object data, MediaType mediaType) throws IOException {
+        for (HttpMessageConverter<?> converter : converters) {
+            if (converter.canWrite(data.getClass(), mediaType)) {
+                headers.clear();
+                ((HttpMessageConverter<Object>) converter).write(data, mediaType, this);
+                return;
+            }
+        }
+        throw new IllegalStateException("沒有可寫出 " + data.getClass() + " 的轉換器");
+    }
+
+    // 與 Spring Boot 預設順序相同的訊息轉換器
+    public List<HttpMessageConverter<?>> getConverters() {
+        return converters;
+    }
+
+    // 上次 reset 之後寫入的總位元組數
+    public long size() {
+        return body.written;
+    }
+
+    public int getFlushes() {
+        return flushes;
+    }
+
+    /**
+     * 上次 reset 之後寫入的內容，只在寫入量不超過緩衝區大小時完整。
+     */
+    public byte[] toByteArray() {
+        if (body.written > CAPACITY) {
+            throw new IllegalStateException("寫入量超過緩衝區大小，內容已被覆寫");
+        }
+        return Arrays.copyOf(body.buffer, body.position);
+    }
+
+    public void reset() {
+        body.position = 0;
+        body.written = 0;
+        flushes = 0;
+    }
+
+    @Override
+    public OutputStream getBody() {
+        return body;
+    }
+
+    @Override
+    public HttpHeaders getHeaders() {
+        return headers;
+    }
+
+    private static final class RewindingOutputStream extends OutputStream {
+        private final byte[] buffer;
+        private int position;
+        private long written;
+
+        private RewindingOutputStream(int capacity) {
+            this.buffer = new byte[capacity];
+        }
+
+        @Override
+        public void write(int b) {
+            if (position == buffer.length) {
+                position = 0;
+            }
+            buffer[position++] = (byte) b;
+            written++;
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) {
+            if (length > buffer.length) {
+                // 大於整個緩衝區的寫入只保留尾端
+                offset += length - buffer.length;
+                written += length - buffer.length;
+                length = buffer.length;
+            }
+            if (position + length > buffer.length) {
+                position = 0;
+            }
+            System.arraycopy(bytes, offset, buffer, position, length);
+            position += length;
+            written += length;
+        }
+    }
+}
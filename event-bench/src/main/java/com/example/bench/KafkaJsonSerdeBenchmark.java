@@ -0,0 +1,79 @@
+package com.example.bench;
+
+import com.example.async.model.TaskEvent;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.apache.kafka.common.serialization.Serializer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.kafka.support.serializer.JsonDeserializer;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * TaskEvent 經過 KafkaConfig 所設定的 JsonSerializer / JsonDeserializer 的成本。
+ * <p>
+ * 序列化端使用預設設定 (會加上型別標頭)，反序列化端與 consumerFactory 相同：固定目標型別且不讀型別標頭。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class KafkaJsonSerdeBenchmark {
+    private static final String TOPIC = "task-events";
+
+    private Serializer<TaskEvent> serializer;
+    private Deserializer<TaskEvent> deserializer;
+    private TaskEvent event;
+    private byte[] payload;
+
+    @Setup
+    public void setUp() {
+        serializer = new JsonSerializer<>();
+        deserializer = new JsonDeserializer<>(TaskEvent.class, false);
+        event = TaskEvent.builder()
+                .correlationId("3f2b8c1e-6a4d-4f7e-9c0b-2d5e8a1f4b7c-fund-3")
+                .status("PROCESSING")
+                .message("子任務 3/10 處理中")
+                .result(Arrays.asList("NAV=10.52", "units=1200"))
+                .finalEvent(false)
+                .build();
+        payload = serializer.serialize(TOPIC, new RecordHeaders(), event);
+    }
+
+    @TearDown
+    public void tearDown() {
+        serializer.close();
+        deserializer.close();
+    }
+
+    @Benchmark
+    public byte[] serialize() {
+        return serializer.serialize(TOPIC, new RecordHeaders(), event);
+    }
+
+    @Benchmark
+    public TaskEvent deserialize() {
+        return deserializer.deserialize(TOPIC, new RecordHeaders(), payload);
+    }
+
+    @Benchmark
+    public TaskEvent roundTrip() {
+        Headers headers = new RecordHeaders();
+        return deserializer.deserialize(TOPIC, headers, serializer.serialize(TOPIC, headers, event));
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.bench;
+
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import org.springframework.core.MethodParameter;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.context.request.async.StandardServletAsyncWebRequest;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+import org.springframework.web.method.support.ModelAndViewContainer;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitterReturnValueHandler;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+
+/**
+ * 將 SseEmitter 接到記憶體中的輸出，不經過 Servlet 容器。
+ * <p>
+ * 與控制器回傳 SseEmitter 時相同，由 ResponseBodyEmitterReturnValueHandler 以模擬的非同步請求初始化 emitter，
+ * 寫出經過 Spring MVC 實際的訊息轉換器與 flush，最後寫進 {@link InMemorySseSink} 的緩衝區。
+ */
+public final class SseEmitterSinks {
+
+    private SseEmitterSinks() {
+    }
+
+    public static SseEmitter attach(InMemorySseSink sink) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/fund-events");
+        request.setAsyncSupported(true);
+        HttpServletResponse response = new SinkResponse(new MockHttpServletResponse(), sink);
+        ServletWebRequest webRequest = new ServletWebRequest(request, response);
+        WebAsyncUtils.getAsyncManager(webRequest).setAsyncWebRequest(new StandardServletAsyncWebRequest(request, response));
+
+        SseEmitter emitter = new SseEmitter(0L);
+        new ResponseBodyEmitterReturnValueHandler(sink.getConverters()).handleReturnValue(emitter,
+                new MethodParameter(SseEmitterSinks.class.getDeclaredMethod("subscribe"), -1),
+                new ModelAndViewContainer(), webRequest);
+        return emitter;
+    }
+
+    // 回傳型別與訂閱端點相同的方法，提供 handler 需要的 MethodParameter
+    private static SseEmitter subscribe() {
+        return null;
+    }
+
+    private static final class SinkResponse extends HttpServletResponseWrapper {
+        private final InMemorySseSink sink;
+        private final ServletOutputStream outputStream;
+
+        private SinkResponse(HttpServletResponse response, InMemorySseSink sink) {
+            super(response);
+            this.sink = sink;
+            this.outputStream = new ServletOutputStream() {
+                @Override
+                public void write(int b) throws IOException {
+                    sink.getBody().write(b);
+                }
+
+                @Override
+                public void write(byte[] bytes, int offset, int length) throws IOException {
+                    sink.getBody().write(bytes, offset, length);
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                @Override
+                public void setWriteListener(WriteListener listener) {
+                }
+            };
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() {
+            return outputStream;
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            super.flushBuffer();
+            sink.recordFlush();
+        }
+    }
+}
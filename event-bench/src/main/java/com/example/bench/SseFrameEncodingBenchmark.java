@@ -0,0 +1,126 @@
+package com.example.bench;
+
+import com.example.async.model.TaskEvent;
+import com.example.async.sse.PreEncodedSseEvent;
+import com.example.async.sse.SseFrameEncoder;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 比較原本 SseEmitter.event() 建構器的寫出路徑與 SseFrameEncoder 預先編碼的框架。
+ * <p>
+ * fanOut 代表同一個事件要送給多少條連線：建構器路徑每條連線都要重新序列化，
+ * 編碼器只序列化一次後重用同一個 byte[]。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SseFrameEncodingBenchmark {
+    private static final String SSE_CONNECTION_ID = "3f2b8c1e-6a4d-4f7e-9c0b-2d5e8a1f4b7c-fund";
+
+    @Param({"1", "100"})
+    private int fanOut;
+
+    private SseFrameEncoder encoder;
+    private SseFrameEncoder.Template heartbeatTemplate;
+    private TaskEvent processingEvent;
+    private TaskEvent heartbeatEvent;
+    private InMemorySseSink sink;
+    private long sequence;
+
+    @Setup
+    public void setUp() throws IOException {
+        // 與 Spring Boot 自動設定的 ObjectMapper 相同的預設值
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        encoder = new SseFrameEncoder(objectMapper);
+        sink = new InMemorySseSink(objectMapper);
+        heartbeatTemplate = encoder.template("HEARTBEAT", TaskEvent.builder()
+                .status("HEARTBEAT")
+                .message("心跳檢測")
+                .finalEvent(false)
+                .build(), 0L);
+        processingEvent = TaskEvent.builder()
+                .correlationId(SSE_CONNECTION_ID + "-3")
+                .status("PROCESSING")
+                .message("子任務 3/10 處理中")
+                .result(Arrays.asList("NAV=10.52", "units=1200"))
+                .finalEvent(false)
+                .build();
+        heartbeatEvent = TaskEvent.builder()
+                .correlationId(SSE_CONNECTION_ID)
+                .status("HEARTBEAT")
+                .message("心跳檢測")
+                .finalEvent(false)
+                .build();
+        verifyEquivalentOutput();
+    }
+
+    @Benchmark
+    public long eventBuilder() throws IOException {
+        String id = String.valueOf(++sequence);
+        for (int i = 0; i < fanOut; i++) {
+            sink.send(SseEmitter.event().id(id).name(processingEvent.getStatus()).data(processingEvent).build());
+        }
+        return sink.size();
+    }
+
+    @Benchmark
+    public long preEncodedFrame() throws IOException {
+        PreEncodedSseEvent frame = encoder.encode(String.valueOf(++sequence), processingEvent.getStatus(), processingEvent);
+        for (int i = 0; i < fanOut; i++) {
+            sink.send(frame.build());
+        }
+        return sink.size();
+    }
+
+    @Benchmark
+    public long heartbeatEventBuilder() throws IOException {
+        for (int i = 0; i < fanOut; i++) {
+            sink.send(SseEmitter.event().name("HEARTBEAT").data(heartbeatEvent).reconnectTime(0).build());
+        }
+        return sink.size();
+    }
+
+    @Benchmark
+    public long heartbeatTemplate() throws IOException {
+        // 心跳框架在建立連線時 render 一次，之後每次心跳直接寫出
+        PreEncodedSseEvent frame = heartbeatTemplate.render(SSE_CONNECTION_ID);
+        for (int i = 0; i < fanOut; i++) {
+            sink.send(frame.build());
+        }
+        return sink.size();
+    }
+
+    /**
+     * 兩條路徑寫出的位元組必須一致，否則比較沒有意義。
+     */
+    private void verifyEquivalentOutput() throws IOException {
+        sink.send(SseEmitter.event().id("1").name(processingEvent.getStatus()).data(processingEvent).build());
+        byte[] expected = sink.toByteArray();
+        sink.reset();
+        sink.send(encoder.encode("1", processingEvent.getStatus(), processingEvent).build());
+        if (!Arrays.equals(expected, sink.toByteArray())) {
+            throw new IllegalStateException("預先編碼的框架與 SseEmitter.event() 的輸出不一致");
+        }
+        sink.reset();
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.bench;
+
+import com.example.async.model.TaskEvent;
+import com.example.async.sse.PreEncodedSseEvent;
+import com.example.async.sse.SseConnection;
+import com.example.async.sse.SseFrameEncoder;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 經由真正的 SseEmitter / SseConnection 寫出事件到記憶體輸出的成本，
+ * 包含 emitter 的同步鎖、Spring MVC 的訊息轉換器與每筆資料的 flush，只是省去網路與 Servlet 容器。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SseFrameWriteBenchmark {
+    private static final String SSE_CONNECTION_ID = "3f2b8c1e-6a4d-4f7e-9c0b-2d5e8a1f4b7c-fund";
+
+    private InMemorySseSink sink;
+    private SseConnection connection;
+    private SseFrameEncoder encoder;
+    private TaskEvent event;
+    private PreEncodedSseEvent frame;
+    private List<PreEncodedSseEvent> burst;
+
+    // 同一次 poll 中屬於同一條連線的事件數
+    @Param({"1", "10"})
+    private int burstSize;
+    private long sequence;
+
+    @Setup
+    public void setUp() throws Exception {
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        sink = new InMemorySseSink(objectMapper);
+        encoder = new SseFrameEncoder(objectMapper);
+        PreEncodedSseEvent heartbeat = encoder.template("HEARTBEAT", TaskEvent.builder()
+                .status("HEARTBEAT")
+                .message("心跳檢測")
+                .build(), 0L).render(SSE_CONNECTION_ID);
+        connection = new SseConnection(SSE_CONNECTION_ID, SseEmitterSinks.attach(sink), heartbeat);
+        event = TaskEvent.builder()
+                .correlationId(SSE_CONNECTION_ID + "-3")
+                .status("PROCESSING")
+                .message("子任務 3/10 處理中")
+                .result(Arrays.asList("NAV=10.52", "units=1200"))
+                .finalEvent(false)
+                .build();
+        frame = encoder.encode("1", event.getStatus(), event);
+        burst = new ArrayList<>(burstSize);
+        for (int i = 0; i < burstSize; i++) {
+            burst.add(encoder.encode(String.valueOf(i), event.getStatus(), event));
+        }
+    }
+
+    @Benchmark
+    public int eventBuilder() throws IOException {
+        connection.send(SseEmitter.event().id(String.valueOf(++sequence)).name(event.getStatus()).data(event));
+        return sink.getFlushes();
+    }
+
+    @Benchmark
+    public int encodeAndWriteFrame() throws IOException {
+        connection.send(encoder.encode(String.valueOf(++sequence), event.getStatus(), event));
+        return sink.getFlushes();
+    }
+
+    @Benchmark
+    public int writeEncodedFrame() throws IOException {
+        connection.send(frame);
+        return sink.getFlushes();
+    }
+
+    @Benchmark
+    public int writeBurstSeparately() throws IOException {
+        for (PreEncodedSseEvent f : burst) {
+            connection.send(f);
+        }
+        return sink.getFlushes();
+    }
+
+    @Benchmark
+    public int writeBurstCoalesced() throws IOException {
+        connection.send(PreEncodedSseEvent.join(burst));
+        return sink.getFlushes();
+    }
+
+    @Benchmark
+    public int heartbeat() throws IOException {
+        connection.sendHeartbeat();
+        return sink.getFlushes();
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.bench;
+
+import com.example.async.kafka.TaskEventBinaryCodec;
+import com.example.async.kafka.TaskEventDeserializer;
+import com.example.async.kafka.TaskEventSerializer;
+import com.example.async.kafka.TaskEventWireFormat;
+import com.example.async.model.TaskCorrelationId;
+import com.example.async.model.TaskEvent;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.kafka.support.serializer.JsonDeserializer;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 比較 TaskEvent 在 Kafka 上的 JSON 與二進位格式，使用 KafkaConfig 實際組裝的序列化器。
+ * 每種格式每個事件的位元組數會在 setup 時輸出。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TaskEventWireFormatBenchmark {
+    private static final String TOPIC = "task-events";
+
+    @Param({"JSON", "BINARY"})
+    private TaskEventWireFormat format;
+
+    @Param({"SUBTASK_COMPLETED", "FAILED"})
+    private String status;
+
+    private TaskEventSerializer serializer;
+    private TaskEventDeserializer deserializer;
+    private TaskEvent event;
+    private byte[] payload;
+
+    @Setup
+    public void setUp() {
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        TaskEventBinaryCodec codec = new TaskEventBinaryCodec(objectMapper);
+        serializer = new TaskEventSerializer(new JsonSerializer<>(), codec, format, Collections.emptyMap());
+        deserializer = new TaskEventDeserializer(new JsonDeserializer<>(TaskEvent.class, false), codec);
+
+        String correlationId = "3f2b8c1e-6a4d-4f7e-9c0b-2d5e8a1f4b7c-fund-3";
+        TaskCorrelationId parsed = TaskCorrelationId.parse(correlationId);
+        TaskEvent.TaskEventBuilder builder = TaskEvent.builder()
+                .correlationId(correlationId)
+                .sseConnectionId(parsed.getSseConnectionId())
+                .taskIndex(parsed.getTaskIndex())
+                .status(status);
+        if ("FAILED".equals(status)) {
+            builder.message("任務處理失敗: 2 個子任務失敗")
+                    .result(Arrays.asList("子任務 1 失敗: timeout", "子任務 4 失敗: 連線中斷"))
+                    .finalEvent(true);
+        } else {
+            builder.message("子任務 3 已完成").result("子任務 3 的結果").finalEvent(false);
+        }
+        event = builder.build();
+        payload = serializer.serialize(TOPIC, new RecordHeaders(), event);
+
+        TaskEvent decoded = deserializer.deserialize(TOPIC, new RecordHeaders(), payload);
+        if (!event.equals(decoded)) {
+            throw new IllegalStateException(format + " 格式來回轉換後內容不一致: " + decoded);
+        }
+        System.out.println(format + " " + status + ": " + payload.length + " bytes/event");
+    }
+
+    @Benchmark
+    public byte[] serialize() {
+        return serializer.serialize(TOPIC, new RecordHeaders(), event);
+    }
+
+    @Benchmark
+    public TaskEvent deserialize() {
+        return deserializer.deserialize(TOPIC, new RecordHeaders(), payload);
+    }
+}
@@ -99,6 +99,22 @@ export class ProgressDialogComponent implements OnInit, OnDestroy {
         }
     }
 
+    private resolveItemRef(event: TaskEvent): { type: 'fund' | 'bond'; index: number } | null {
+        if (event.sseConnectionId != null && event.taskIndex != null) {
+            if (event.sseConnectionId.endsWith('-fund')) {
+                return { type: 'fund', index: event.taskIndex };
+            }
+            if (event.sseConnectionId.endsWith('-bond')) {
+                return { type: 'bond', index: event.taskIndex };
+            }
+        }
+        const itemIndexMatch = event.correlationId.match(/-(fund|bond)-(\d+)$/);
+        if (itemIndexMatch && itemIndexMatch[2]) {
+            return { type: itemIndexMatch[1] as 'fund' | 'bond', index: parseInt(itemIndexMatch[2]) };
+        }
+        return null;
+    }
+
     handleTaskEvent(event: TaskEvent): void {
         console.log('收到事件:', event);
 
@@ -106,13 +122,13 @@ export class ProgressDialogComponent implements OnInit, OnDestroy {
         const eventType = event.system || (event.correlationId.includes('-fund') ? 'fund' : 'bond');
 
         // 檢查是否這是特定項目的事件還是一般事件
-        // 從correlationId中提取項目索引，例如: "xyz-fund-0" 中的0
-        const itemIndexMatch = event.correlationId.match(/-(fund|bond)-(\d+)$/);
+        // 優先使用後端解析好的 sseConnectionId/taskIndex，舊版後端才從 correlationId 提取，例如: "xyz-fund-0" 中的0
+        const itemRef = this.resolveItemRef(event);
 
-        if (itemIndexMatch && itemIndexMatch[2]) {
+        if (itemRef) {
             // 這是針對特定項目的事件
-            const type = itemIndexMatch[1] as 'fund' | 'bond'; // 'fund' 或 'bond'
-            const itemIndex = parseInt(itemIndexMatch[2]);
+            const type = itemRef.type;
+            const itemIndex = itemRef.index;
 
             // 找出屬於該類型的所有項目
             const typeItems = this.itemStatuses.filter(item => item.type === type);
@@ -27,6 +27,11 @@ export interface TaskEvent {
     message: string;
     result?: any;
     finalEvent: boolean;
+    // 後端由 correlationId 解析出的結構化欄位，舊版後端不會提供
+    sseConnectionId?: string;
+    taskIndex?: number;
+    // 後端發布事件的時間 (epoch 毫秒)
+    publishedAt?: number;
     receivedAt?: Date;
     system?: SystemType;
 }
@@ -71,6 +76,10 @@ export class TaskService {
     // 心跳超時時間（毫秒）
     private readonly HEARTBEAT_TIMEOUT_MS = 30000;
 
+    // 串流在最終事件之前結束 (例如伺服器回收連線) 時的重連間隔與連續重連次數上限
+    private readonly RECONNECT_DELAY_MS = 1000;
+    private readonly MAX_RECONNECT_ATTEMPTS = 5;
+
     // 事件主題
     private eventSubject = new Subject<TaskEvent>();
     public events$ = this.eventSubject.asObservable();
@@ -78,6 +87,16 @@ export class TaskService {
     // 連接管理
     private connections = new Map<string, SseConnection>();
 
+    // 每個 SSE 連線最後收到的事件 ID，重連時以 Last-Event-ID 帶回讓伺服器補送遺漏的事件
+    private lastEventIds = new Map<string, string>();
+
+    // 等待中的重連計時器與連續重連次數；收到任務事件後重設次數
+    private reconnectTimers = new Map<string, ReturnType<typeof setTimeout>>();
+    private reconnectAttempts = new Map<string, number>();
+
+    // 指定 taskIds 訂閱的 SSE 連線尚未收到最終事件的任務；重連時沿用，全部完成才結束串流
+    private pendingTaskIds = new Map<string, Set<string>>();
+
     constructor(private http: HttpClient) { }
 
     /**
@@ -130,6 +149,9 @@ export class TaskService {
         };
 
         this.connections.set(correlationId, connection);
+        if (taskIds && taskIds.length > 0 && !this.pendingTaskIds.has(correlationId)) {
+            this.pendingTaskIds.set(correlationId, new Set(taskIds));
+        }
 
         // 建立並訂閱 SSE Observable
         const subscription = this.createSseObservable(correlationId, system, config, abortController, taskIds)
@@ -171,6 +193,7 @@ export class TaskService {
      * @param correlationId 關聯 ID
      */
     public disconnectEventStream(correlationId: string): void {
+        this.cancelReconnect(correlationId);
         const connection = this.connections.get(correlationId);
         if (!connection) return;
 
@@ -192,6 +215,11 @@ export class TaskService {
      * 關閉所有 SSE 連接
      */
     public disconnectAllEventStreams(): void {
+        this.reconnectTimers.forEach(timer => clearTimeout(timer));
+        this.reconnectTimers.clear();
+        this.reconnectAttempts.clear();
+        this.pendingTaskIds.clear();
+
         this.connections.forEach((connection, id) => {
             if (!connection.abortController.signal.aborted) {
                 connection.abortController.abort();
@@ -228,14 +256,20 @@ export class TaskService {
                         requestBody.taskIds = taskIds;
                     }
 
-                    // 建立 SSE 連接
+                    // 建立 SSE 連接 (重連時帶上最後收到的事件 ID)
+                    const headers: Record<string, string> = {
+                        'Content-Type': 'application/json',
+                        'Accept': 'text/event-stream'
+                    };
+                    const lastEventId = this.lastEventIds.get(correlationId);
+                    if (lastEventId) {
+                        headers['Last-Event-ID'] = lastEventId;
+                    }
+
                     const response = await fetch(`${config.apiUrl}/${config.eventsEndpoint}`, {
                         method: 'POST',
                         signal: abortController.signal,
-                        headers: {
-                            'Content-Type': 'application/json',
-                            'Accept': 'text/event-stream'
-                        },
+                        headers,
                         body: JSON.stringify(requestBody)
                     });
 
@@ -270,17 +304,12 @@ export class TaskService {
                         // 檢查流是否結束
                         if (done) {
                             this.logInfo(`${system} 系統 SSE 串流結束 (${correlationId})`);
+                            observer.complete();
 
+                            // 收到最終事件時連接已被中止；否則是伺服器在任務完成前關閉串流，帶 Last-Event-ID 重連補齊
                             if (!abortController.signal.aborted) {
-                                this.processEvent(JSON.stringify({
-                                    correlationId,
-                                    status: 'STREAM_CLOSED',
-                                    message: `${system} 系統 SSE 串流由伺服器關閉`,
-                                    finalEvent: true,
-                                }), 'STREAM_CLOSED', system);
+                                this.scheduleReconnect(correlationId, system, taskIds);
                             }
-
-                            observer.complete();
                             return;
                         }
 
@@ -291,10 +320,14 @@ export class TaskService {
 
                         // 處理每一行
                         lines.forEach((line, index) => {
+                            // 記錄事件 ID
+                            if (line.startsWith('id:')) {
+                                this.lastEventIds.set(correlationId, line.substring(3).trim());
+                            }
                             // 處理數據行
-                            if (line.startsWith('data:')) {
+                            else if (line.startsWith('data:')) {
                                 const jsonData = line.substring(5).trim();
-                                if (jsonData) this.processEvent(jsonData, undefined, system);
+                                if (jsonData) this.processEvent(jsonData, correlationId, undefined, system);
                             }
                             // 處理事件行
                             else if (line.startsWith('event:')) {
@@ -303,7 +336,7 @@ export class TaskService {
 
                                 if (nextLineIndex < lines.length && lines[nextLineIndex].startsWith('data:')) {
                                     const jsonData = lines[nextLineIndex].substring(5).trim();
-                                    if (jsonData) this.processEvent(jsonData, eventName, system);
+                                    if (jsonData) this.processEvent(jsonData, correlationId, eventName, system);
                                 }
                             }
                         });
@@ -342,9 +375,10 @@ export class TaskService {
 
     /**
      * 處理 SSE 事件
+     * @param connectionId 收到事件的 SSE 連線 ID (建立連接時的關聯 ID)，任務事件的 correlationId 則是任務 ID
      * @private
      */
-    private processEvent(eventData: string, eventName?: string, system?: SystemType): void {
+    private processEvent(eventData: string, connectionId: string, eventName?: string, system?: SystemType): void {
         try {
             // 解析事件數據
             const taskEvent: TaskEvent = JSON.parse(eventData);
@@ -353,11 +387,9 @@ export class TaskService {
 
             // 檢查是否為心跳事件
             if (eventName === 'HEARTBEAT' || taskEvent.status === 'HEARTBEAT') {
-                if (taskEvent.correlationId) {
-                    const connection = this.connections.get(taskEvent.correlationId);
-                    if (connection) {
-                        connection.lastHeartbeatTime = new Date();
-                    }
+                const connection = this.connections.get(connectionId);
+                if (connection) {
+                    connection.lastHeartbeatTime = new Date();
                 }
                 this.logInfo(`收到 ${system} 系統心跳事件`);
                 return;
@@ -365,11 +397,17 @@ export class TaskService {
 
             // 處理一般事件
             this.logInfo(`收到 ${system} 系統 SSE 事件 (${eventName || 'message'})`);
+            // 重連後伺服器會先送 CONNECTED，只有真正的任務事件才重設重連次數
+            if (taskEvent.status !== 'CONNECTED') {
+                this.reconnectAttempts.delete(connectionId);
+            }
             this.eventSubject.next(taskEvent);
 
-            // 如果是最終事件，關閉連接
-            if (taskEvent.finalEvent) {
-                this.disconnectEventStream(taskEvent.correlationId);
+            // 如果是最終事件且串流已無待完成的任務，關閉連接；伺服器隨後關閉串流時不會再重連
+            if (taskEvent.finalEvent && this.completePendingTask(connectionId, taskEvent.correlationId)) {
+                this.lastEventIds.delete(connectionId);
+                this.pendingTaskIds.delete(connectionId);
+                this.disconnectEventStream(connectionId);
             }
         } catch (error) {
             // 處理解析錯誤
@@ -377,7 +415,7 @@ export class TaskService {
 
             // 發送錯誤事件
             if (system) {
-                const correlationId = this.extractCorrelationId(eventData) || 'unknown';
+                const correlationId = this.extractCorrelationId(eventData) || connectionId;
                 this.eventSubject.next({
                     correlationId,
                     status: 'ERROR',
@@ -388,11 +426,66 @@ export class TaskService {
                 });
 
                 // 關閉連接
-                this.disconnectEventStream(correlationId);
+                this.lastEventIds.delete(connectionId);
+                this.pendingTaskIds.delete(connectionId);
+                this.disconnectEventStream(connectionId);
             }
         }
     }
 
+    /**
+     * 記錄任務已收到最終事件，回傳串流是否已無待完成的任務。
+     * 未指定 taskIds 的串流由伺服器在第一個最終事件後關閉；針對整個連線的最終事件也結束串流
+     * @private
+     */
+    private completePendingTask(connectionId: string, taskId: string): boolean {
+        const pending = this.pendingTaskIds.get(connectionId);
+        if (!pending || taskId === connectionId) {
+            return true;
+        }
+        pending.delete(taskId);
+        return pending.size === 0;
+    }
+
+    /**
+     * 串流在最終事件之前結束時重連；連續重連次數超過上限才視為串流關閉
+     * @private
+     */
+    private scheduleReconnect(correlationId: string, system: SystemType, taskIds?: string[]): void {
+        const attempts = (this.reconnectAttempts.get(correlationId) || 0) + 1;
+        this.disconnectEventStream(correlationId);
+
+        if (attempts > this.MAX_RECONNECT_ATTEMPTS) {
+            this.reconnectAttempts.delete(correlationId);
+            this.processEvent(JSON.stringify({
+                correlationId,
+                status: 'STREAM_CLOSED',
+                message: `${system} 系統 SSE 串流由伺服器關閉`,
+                finalEvent: true,
+            }), correlationId, 'STREAM_CLOSED', system);
+            return;
+        }
+
+        this.reconnectAttempts.set(correlationId, attempts);
+        this.logInfo(`${system} 系統 SSE 串流在最終事件前結束，${this.RECONNECT_DELAY_MS}ms 後第 ${attempts} 次重連 (${correlationId})`);
+        this.reconnectTimers.set(correlationId, setTimeout(() => {
+            this.reconnectTimers.delete(correlationId);
+            this.connectToEventStream(correlationId, system, taskIds);
+        }, this.RECONNECT_DELAY_MS));
+    }
+
+    /**
+     * 取消等待中的重連
+     * @private
+     */
+    private cancelReconnect(correlationId: string): void {
+        const timer = this.reconnectTimers.get(correlationId);
+        if (timer !== undefined) {
+            clearTimeout(timer);
+            this.reconnectTimers.delete(correlationId);
+        }
+    }
+
     /**
      * 處理連接錯誤
      * @private
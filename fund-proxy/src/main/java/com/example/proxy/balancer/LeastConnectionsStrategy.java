@@ -0,0 +1,39 @@
+package com.example.proxy.balancer;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 選擇進行中請求數 (含開啟中的 SSE 串流) 相對有效權重最少的可用目標。
+ * SSE 串流會長時間佔用連線，依請求次數輪詢容易讓各 pod 的連線數失衡，依目前連線數分配則不會。
+ */
+class LeastConnectionsStrategy implements BalancingStrategy {
+    private final List<UpstreamTarget> targets;
+
+    LeastConnectionsStrategy(List<UpstreamTarget> targets) {
+        this.targets = targets;
+    }
+
+    @Override
+    public UpstreamTarget choose() {
+        long now = System.nanoTime();
+        int size = targets.size();
+        // 從隨機位置開始掃描，連線數相同時不會總是選到第一個目標
+        int start = ThreadLocalRandom.current().nextInt(size);
+        UpstreamTarget best = null;
+        double bestLoad = Double.MAX_VALUE;
+        for (int i = 0; i < size; i++) {
+            UpstreamTarget candidate = targets.get((start + i) % size);
+            double effective = candidate.effectiveWeight(now);
+            if (effective <= 0) {
+                continue;
+            }
+            double load = candidate.getActive() / effective;
+            if (load < bestLoad) {
+                best = candidate;
+                bestLoad = load;
+            }
+        }
+        return best;
+    }
+}
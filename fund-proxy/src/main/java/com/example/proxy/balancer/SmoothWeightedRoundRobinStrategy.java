@@ -0,0 +1,41 @@
+package com.example.proxy.balancer;
+
+import java.util.List;
+
+/**
+ * 平滑加權輪詢 (與 nginx 相同)：每次選擇時各目標的目前權重加上自身有效權重，選出最大者後扣掉有效權重總和。
+ * 權重 5、1、1 會得到 a a b a c a a 這樣分散的順序，而不是連續把 5 個請求送給同一個目標；
+ * 不可用的目標不參與，慢啟動中的目標以較低的有效權重參與。
+ */
+class SmoothWeightedRoundRobinStrategy implements BalancingStrategy {
+    private final List<UpstreamTarget> targets;
+    private final double[] currentWeights;
+
+    SmoothWeightedRoundRobinStrategy(List<UpstreamTarget> targets) {
+        this.targets = targets;
+        this.currentWeights = new double[targets.size()];
+    }
+
+    @Override
+    public synchronized UpstreamTarget choose() {
+        long now = System.nanoTime();
+        int best = -1;
+        double total = 0;
+        for (int i = 0; i < currentWeights.length; i++) {
+            double effective = targets.get(i).effectiveWeight(now);
+            if (effective <= 0) {
+                continue;
+            }
+            currentWeights[i] += effective;
+            total += effective;
+            if (best < 0 || currentWeights[i] > currentWeights[best]) {
+                best = i;
+            }
+        }
+        if (best < 0) {
+            return null;
+        }
+        currentWeights[best] -= total;
+        return targets.get(best);
+    }
+}
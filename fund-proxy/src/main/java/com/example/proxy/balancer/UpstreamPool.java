@@ -0,0 +1,137 @@
+package com.example.proxy.balancer;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 一條路由的所有後端目標與選擇方式。
+ * <p>
+ * 有親和 key 的請求以 bounded-load 一致性雜湊選擇：目標的進行中請求數上限為
+ * ceil(loadFactor * (總數 + 1) * 有效權重占比)，超過或不可用時溢出到環上的下一個目標；沒有 key 的請求交給路由設定的策略。
+ * 所有目標都不可用時不拒絕請求，仍依原本的選擇送出 (fail-open)，由後端回應實際錯誤。
+ */
+@Slf4j
+public class UpstreamPool {
+    private final String routeId;
+    private final List<UpstreamTarget> targets;
+    private final ConsistentHashRing ring;
+    private final BalancingStrategy.Type strategyType;
+    private final BalancingStrategy strategy;
+    private final UpstreamSettings settings;
+
+    public UpstreamPool(String routeId, List<UpstreamTarget> targets, BalancingStrategy.Type strategyType,
+                        UpstreamSettings settings) {
+        this.routeId = routeId;
+        this.targets = Collections.unmodifiableList(targets);
+        this.ring = new ConsistentHashRing(targets, settings.getVirtualNodes());
+        this.strategyType = strategyType;
+        this.strategy = strategyType.create(this.targets);
+        this.settings = settings;
+    }
+
+    public UpstreamTarget selectByKey(String key) {
+        long now = System.nanoTime();
+        int totalActive = 0;
+        double totalWeight = 0;
+        for (UpstreamTarget target : targets) {
+            totalActive += target.getActive();
+            totalWeight += target.effectiveWeight(now);
+        }
+        if (totalWeight <= 0) {
+            return targets.get(ring.select(key, i -> true));
+        }
+        final double perWeight = settings.getLoadFactor() * (totalActive + 1) / totalWeight;
+        return targets.get(ring.select(key, i -> {
+            UpstreamTarget target = targets.get(i);
+            double effective = target.effectiveWeight(now);
+            return effective > 0 && target.getActive() < Math.ceil(perWeight * effective);
+        }));
+    }
+
+    public UpstreamTarget select() {
+        UpstreamTarget target = strategy.choose();
+        if (target == null) {
+            target = targets.get(ThreadLocalRandom.current().nextInt(targets.size()));
+            log.warn("No available target on route {}, falling back to {}", routeId, target.getUri());
+        }
+        return target;
+    }
+
+    /**
+     * 重試時選擇：排除剛失敗的目標，取可用目標中進行中請求數相對有效權重最少者；沒有其他可用目標時回傳 null。
+     */
+    public UpstreamTarget selectForRetry(UpstreamTarget failed) {
+        return selectExcluding(Collections.singleton(failed));
+    }
+
+    /**
+     * 排除已嘗試過的目標，取可用目標中進行中請求數相對有效權重最少者；沒有其他可用目標時回傳 null。
+     */
+    public UpstreamTarget selectExcluding(Collection<UpstreamTarget> excluded) {
+        long now = System.nanoTime();
+        UpstreamTarget best = null;
+        double bestLoad = Double.MAX_VALUE;
+        for (UpstreamTarget target : targets) {
+            double effective = target.effectiveWeight(now);
+            if (effective <= 0 || excluded.contains(target)) {
+                continue;
+            }
+            double load = target.getActive() / effective;
+            if (load < bestLoad) {
+                best = target;
+                bestLoad = load;
+            }
+        }
+        return best;
+    }
+
+    public void recordSuccess(UpstreamTarget target) {
+        target.recordSuccess();
+    }
+
+    /**
+     * 記錄連線失敗、502 或 504，連續失敗達門檻時剔除該目標；已剔除的目標數達上限時只記錄不剔除。
+     */
+    public void recordFailure(UpstreamTarget target) {
+        if (target.recordFailure() < settings.getFailureThreshold()) {
+            return;
+        }
+        long now = System.nanoTime();
+        int unavailable = 0;
+        for (UpstreamTarget other : targets) {
+            if (!other.isAvailable(now)) {
+                unavailable++;
+            }
+        }
+        if ((unavailable + 1) * 100 > settings.getMaxEjectionPercent() * targets.size()) {
+            log.warn("Target {} on route {} keeps failing but {} of {} targets are already unavailable, not ejecting",
+                    target.getUri(), routeId, unavailable, targets.size());
+            return;
+        }
+        target.eject(now, TimeUnit.MILLISECONDS.toNanos(settings.getEjectionMs()),
+                TimeUnit.MILLISECONDS.toNanos(settings.getMaxEjectionMs()));
+        log.warn("Ejected target {} on route {} for {}ms after {} consecutive failures", target.getUri(), routeId,
+                TimeUnit.NANOSECONDS.toMillis(target.getEjectedForNanos(now)), settings.getFailureThreshold());
+    }
+
+    public String getRouteId() {
+        return routeId;
+    }
+
+    public BalancingStrategy.Type getStrategyType() {
+        return strategyType;
+    }
+
+    public List<UpstreamTarget> getTargets() {
+        return targets;
+    }
+
+    public UpstreamSettings getSettings() {
+        return settings;
+    }
+}
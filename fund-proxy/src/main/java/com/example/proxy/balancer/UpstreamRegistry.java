@@ -0,0 +1,27 @@
+package com.example.proxy.balancer;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 目前生效的各路由目標池。路由重新整理時 filter 會重新建立，同一路由的新池取代舊池。
+ */
+@Component
+public class UpstreamRegistry {
+    private final Map<String, UpstreamPool> pools = new ConcurrentHashMap<>();
+
+    public void register(UpstreamPool pool) {
+        pools.put(pool.getRouteId(), pool);
+    }
+
+    public UpstreamPool get(String routeId) {
+        return pools.get(routeId);
+    }
+
+    public Collection<UpstreamPool> getPools() {
+        return pools.values();
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.proxy.balancer;
+
+import lombok.Data;
+
+/**
+ * 一條路由的目標選擇、延遲統計、健康檢查與離群剔除參數，預設值適用於 fund/bond 系統。
+ */
+@Data
+public class UpstreamSettings {
+    private double loadFactor = 1.25; // 單一目標的進行中請求數上限為平均值的倍數
+    private int virtualNodes = 100; // 每單位權重在雜湊環上的虛擬節點數
+    private long ewmaDecayMs = 10000; // PEAK_EWMA 延遲平均的衰減時間
+
+    // 主動健康檢查：定期 GET 每個目標的 healthCheckPath，連續失敗/成功達門檻才切換狀態
+    private boolean healthCheckEnabled = true;
+    private String healthCheckPath = "/actuator/health";
+    private long healthCheckIntervalMs = 5000;
+    private long healthCheckTimeoutMs = 2000;
+    private int unhealthyThreshold = 2;
+    private int healthyThreshold = 2;
+
+    // 被動剔除：連續 failureThreshold 次連線失敗、502 或 504 即剔除，每次再被剔除時間加倍，最多 maxEjectionMs
+    private int failureThreshold = 3;
+    private long ejectionMs = 10000;
+    private long maxEjectionMs = 120000;
+    private int maxEjectionPercent = 50; // 同時被剔除的目標不超過此比例，避免全部剔除
+    private int maxRetries = 1; // 連線失敗 (請求未送達後端) 時改送其他目標的次數
+
+    // 恢復或剔除結束的目標在 slowStartMs 內權重由 10% 線性升回原值
+    private long slowStartMs = 30000;
+}
@@ -0,0 +1,64 @@
+package com.example.proxy.mux;
+
+import org.springframework.core.io.buffer.DataBuffer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * 增量解析後端多工串流的框架：一行 ASCII 標頭 {@code <類型> <通道 ID> <長度>\n} 加上長度位元組的內容。
+ * 一個框架可能跨越多個 DataBuffer，不完整的部分保留到下一次呼叫。
+ */
+final class MuxFrameDecoder {
+    private static final int MAX_HEADER_LENGTH = 128;
+
+    interface Handler {
+        void onFrame(char type, String channelId, byte[] payload);
+    }
+
+    private byte[] buffer = new byte[8192];
+    private int length;
+
+    void decode(DataBuffer data, Handler handler) {
+        int readable = data.readableByteCount();
+        if (length + readable > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + readable));
+        }
+        data.read(buffer, length, readable);
+        length += readable;
+
+        int position = 0;
+        while (true) {
+            int newline = indexOfNewline(position);
+            if (newline < 0) {
+                if (length - position > MAX_HEADER_LENGTH) {
+                    throw new IllegalStateException("Mux frame header exceeds " + MAX_HEADER_LENGTH + " bytes");
+                }
+                break;
+            }
+            String header = new String(buffer, position, newline - position, StandardCharsets.US_ASCII);
+            int last = header.lastIndexOf(' ');
+            if (header.length() < 5 || header.charAt(1) != ' ' || last <= 2) {
+                throw new IllegalStateException("Malformed mux frame header: " + header);
+            }
+            int size = Integer.parseInt(header.substring(last + 1));
+            int start = newline + 1;
+            if (length - start < size) {
+                break;
+            }
+            handler.onFrame(header.charAt(0), header.substring(2, last), Arrays.copyOfRange(buffer, start, start + size));
+            position = start + size;
+        }
+        System.arraycopy(buffer, position, buffer, 0, length - position);
+        length -= position;
+    }
+
+    private int indexOfNewline(int from) {
+        for (int i = from; i < length; i++) {
+            if (buffer[i] == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,183 @@
+package com.example.proxy.mux;
+
+import com.example.proxy.balancer.AffinityKeys;
+import com.example.proxy.balancer.UpstreamPool;
+import com.example.proxy.balancer.UpstreamRegistry;
+import com.example.proxy.balancer.UpstreamTarget;
+import com.example.proxy.ratelimit.RateLimiter;
+import com.example.proxy.ratelimit.RateLimiterRegistry;
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.BodyInserter;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import javax.annotation.PreDestroy;
+import java.io.ByteArrayOutputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 在 gateway 內多工 SSE 訂閱：每個後端目標只開一條多工事件串流 (見 {@link MuxStream})，
+ * 客戶端的訂閱以通道登記在選到的目標上，後端的連線數與 gateway 數量成正比而不是與使用者數量成正比。
+ * <p>
+ * 目標以與 LoadBalancerConfig 相同的 correlationId 一致性雜湊選擇，任務請求與事件串流仍落在同一個 pod。
+ * 心跳由 gateway 對閒置的客戶端連線發送，後端不再為每條連線排程心跳。
+ * 訂閱不經過路由的 filter，限流改為直接套用 rate-limit 指定的規則 (見 RateLimitConfig)。
+ */
+@Component
+@ConditionalOnProperty(name = "app.sse-mux.enabled", havingValue = "true")
+@Slf4j
+public class SseMultiplexer {
+    private static final DefaultDataBufferFactory BUFFERS = new DefaultDataBufferFactory();
+
+    private final UpstreamRegistry registry;
+    private final RateLimiterRegistry rateLimiters;
+    private final WebClient webClient = WebClient.create();
+    private final Map<URI, MuxStream> streams = new ConcurrentHashMap<>();
+    private final String routeId;
+    private final String upstreamPath;
+    private final String affinityField;
+    private final String heartbeatMessage;
+    private final Duration heartbeatInterval;
+    private final Duration idleTimeout;
+    private final Duration registerTimeout;
+    private final String rateLimit;
+
+    public SseMultiplexer(UpstreamRegistry registry, RateLimiterRegistry rateLimiters,
+                          @Value("${app.sse-mux.route-id}") String routeId,
+                          @Value("${app.sse-mux.upstream-path}") String upstreamPath,
+                          @Value("${app.sse-mux.affinity-field:correlationId}") String affinityField,
+                          @Value("${app.sse-mux.heartbeat-message:gateway heartbeat}") String heartbeatMessage,
+                          @Value("${app.sse-mux.heartbeat-interval-ms:10000}") long heartbeatIntervalMs,
+                          @Value("${app.sse-mux.idle-timeout-ms:30000}") long idleTimeoutMs,
+                          @Value("${app.sse-mux.register-timeout-ms:5000}") long registerTimeoutMs,
+                          @Value("${app.sse-mux.rate-limit:}") String rateLimit) {
+        this.registry = registry;
+        this.rateLimiters = rateLimiters;
+        this.routeId = routeId;
+        this.upstreamPath = upstreamPath;
+        this.affinityField = affinityField;
+        this.heartbeatMessage = heartbeatMessage;
+        this.heartbeatInterval = Duration.ofMillis(heartbeatIntervalMs);
+        this.idleTimeout = Duration.ofMillis(idleTimeoutMs);
+        this.registerTimeout = Duration.ofMillis(registerTimeoutMs);
+        this.rateLimit = rateLimit;
+    }
+
+    public Mono<ServerResponse> subscribe(ServerRequest request) {
+        RateLimiter limiter = rateLimiters.get(rateLimit);
+        if (limiter != null) {
+            long waitNanos = limiter.tryAcquire(rateLimiters.clientKey(request.exchange().getRequest()));
+            if (waitNanos > 0) {
+                return ServerResponse.status(HttpStatus.TOO_MANY_REQUESTS)
+                        .header(HttpHeaders.RETRY_AFTER, String.valueOf(RateLimiter.retryAfterSeconds(waitNanos)))
+                        .build();
+            }
+        }
+        String lastEventId = request.headers().asHttpHeaders().getFirst("Last-Event-ID");
+        return request.bodyToMono(byte[].class).defaultIfEmpty(new byte[0]).flatMap(body -> {
+            String connectionId = AffinityKeys.fromJsonBody(BUFFERS.wrap(body), affinityField);
+            if (connectionId == null) {
+                return ServerResponse.badRequest().build();
+            }
+            UpstreamPool pool = registry.get(routeId);
+            if (pool == null) {
+                log.warn("No upstream pool registered for route {}, rejecting SSE subscription {}", routeId, connectionId);
+                return ServerResponse.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+            }
+            UpstreamTarget target = pool.selectByKey(AffinityKeys.normalize(connectionId));
+            MuxStream stream = streamFor(target.getUri());
+            log.debug("SSE subscription {} multiplexed onto {}", connectionId, target.getUri());
+
+            Flux<DataBuffer> events = events(stream, target, connectionId, body, lastEventId);
+            BodyInserter<Flux<DataBuffer>, ServerHttpResponse> inserter =
+                    (response, context) -> response.writeAndFlushWith(events.map(Mono::just));
+            return ServerResponse.ok()
+                    .contentType(MediaType.TEXT_EVENT_STREAM)
+                    .header(HttpHeaders.CACHE_CONTROL, "no-cache")
+                    .body(inserter);
+        });
+    }
+
+    private Flux<DataBuffer> events(MuxStream stream, UpstreamTarget target, String connectionId, byte[] body,
+                                    String lastEventId) {
+        byte[] heartbeat = heartbeatFrame(connectionId);
+        long heartbeatNanos = heartbeatInterval.toNanos();
+        return Flux.create(sink -> {
+            String channelId = stream.nextChannelId();
+            MuxStream.Downstream downstream = stream.attach(channelId, sink);
+            // 多工連線不經過 LoadBalancerConfig，仍計入目標的進行中請求數，維持一致性雜湊的負載上限
+            target.acquire();
+            Disposable heartbeats = Flux.interval(heartbeatInterval).subscribe(tick -> {
+                if (downstream.isIdleFor(heartbeatNanos)) {
+                    downstream.send(heartbeat);
+                }
+            });
+            Disposable registration = stream.register(channelId, body, lastEventId, registerTimeout)
+                    .subscribe(null, e -> {
+                        log.warn("Failed to register SSE subscription {} on {}: {}", connectionId, target.getUri(),
+                                e.getMessage());
+                        sink.error(e);
+                    });
+            sink.onDispose(() -> {
+                heartbeats.dispose();
+                registration.dispose();
+                target.release();
+                stream.detach(channelId);
+            });
+        });
+    }
+
+    private MuxStream streamFor(URI target) {
+        MuxStream stream = streams.compute(target, (uri, existing) -> existing != null && !existing.isTerminated()
+                ? existing
+                : new MuxStream(uri, upstreamPath, webClient, terminated -> streams.remove(uri, terminated)));
+        stream.start(idleTimeout);
+        return stream;
+    }
+
+    /**
+     * 與後端 HEARTBEAT 事件相同的格式，前端以 correlationId 更新連線的最後心跳時間。
+     */
+    private byte[] heartbeatFrame(String connectionId) {
+        JsonStringEncoder json = JsonStringEncoder.getInstance();
+        ByteArrayOutputStream frame = new ByteArrayOutputStream(160);
+        write(frame, "event:HEARTBEAT\ndata:{\"correlationId\":\"");
+        byte[] id = json.quoteAsUTF8(connectionId);
+        frame.write(id, 0, id.length);
+        write(frame, "\",\"status\":\"HEARTBEAT\",\"message\":\"");
+        byte[] message = json.quoteAsUTF8(heartbeatMessage);
+        frame.write(message, 0, message.length);
+        write(frame, "\",\"finalEvent\":false}\nretry:0\n\n");
+        return frame.toByteArray();
+    }
+
+    private static void write(ByteArrayOutputStream out, String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    @PreDestroy
+    public void stop() {
+        for (MuxStream stream : streams.values()) {
+            stream.dispose();
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.proxy.ratelimit;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * /actuator/ratelimits：各限流規則的設定與允許/拒絕總數，以及被拒絕次數最多的客戶端各自的計數與剩餘 token。
+ */
+@Component
+@Endpoint(id = "ratelimits")
+@RequiredArgsConstructor
+public class RateLimitsEndpoint {
+    private static final int MAX_CLIENTS_LISTED = 100;
+
+    private final RateLimiterRegistry registry;
+
+    @ReadOperation
+    public Map<String, Object> rateLimits() {
+        Map<String, Object> limits = new LinkedHashMap<>();
+        long now = System.nanoTime();
+        for (RateLimiter limiter : registry.getLimiters()) {
+            List<Map.Entry<String, RateLimiter.Client>> clients = new ArrayList<>(limiter.getClients().entrySet());
+            clients.sort((a, b) -> Long.compare(b.getValue().getRejected(), a.getValue().getRejected()));
+            Map<String, Object> clientViews = new LinkedHashMap<>();
+            for (Map.Entry<String, RateLimiter.Client> entry : clients.subList(0, Math.min(MAX_CLIENTS_LISTED, clients.size()))) {
+                RateLimiter.Client client = entry.getValue();
+                Map<String, Object> view = new LinkedHashMap<>();
+                view.put("allowed", client.getAllowed());
+                view.put("rejected", client.getRejected());
+                view.put("available", client.getAvailable(now));
+                view.put("idleMillis", TimeUnit.NANOSECONDS.toMillis(now - client.getLastSeenNanos()));
+                clientViews.put(entry.getKey(), view);
+            }
+            Map<String, Object> limit = new LinkedHashMap<>();
+            limit.put("permitsPerSecond", limiter.getPermitsPerSecond());
+            limit.put("burst", limiter.getBurst());
+            limit.put("allowed", limiter.getAllowed());
+            limit.put("rejected", limiter.getRejected());
+            limit.put("clientCount", clients.size());
+            limit.put("clients", clientViews);
+            limits.put(limiter.getName(), limit);
+        }
+        return limits;
+    }
+}
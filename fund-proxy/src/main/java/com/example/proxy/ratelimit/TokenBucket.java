@@ -0,0 +1,47 @@
+package com.example.proxy.ratelimit;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 無鎖的 token bucket，以 GCRA (generic cell rate algorithm) 的形式保存：只記錄桶子重新裝滿的時間一個值，
+ * 取得 token 只需一次 CAS。每 intervalNanos 補充一個 token，最多累積 burst 個。
+ */
+final class TokenBucket {
+    private final long intervalNanos;
+    private final long burstNanos;
+    // 桶子重新裝滿的時間 (nanoTime)；不大於現在時表示桶子是滿的
+    private final AtomicLong fullAt;
+
+    TokenBucket(long intervalNanos, int burst, long nowNanos) {
+        this.intervalNanos = intervalNanos;
+        this.burstNanos = intervalNanos * burst;
+        this.fullAt = new AtomicLong(nowNanos);
+    }
+
+    /**
+     * 取得一個 token。成功回傳 0，否則回傳需要再等待多久 (奈秒) 才會有下一個 token。
+     */
+    long tryAcquire(long nowNanos) {
+        while (true) {
+            long current = fullAt.get();
+            long next = Math.max(current, nowNanos) + intervalNanos;
+            long wait = next - nowNanos - burstNanos;
+            if (wait > 0) {
+                return wait;
+            }
+            if (fullAt.compareAndSet(current, next)) {
+                return 0;
+            }
+        }
+    }
+
+    // 目前可用的 token 數
+    long available(long nowNanos) {
+        long debt = Math.max(0, fullAt.get() - nowNanos);
+        return (burstNanos - debt) / intervalNanos;
+    }
+
+    boolean isFull(long nowNanos) {
+        return fullAt.get() - nowNanos <= 0;
+    }
+}
@@ -1,15 +1,24 @@
 package com.example.async.config;
 
+import com.example.async.kafka.TaskEventBinaryCodec;
+import com.example.async.kafka.TaskEventDeserializer;
+import com.example.async.kafka.TaskEventSerializer;
+import com.example.async.kafka.TaskEventWireFormat;
 import com.example.async.model.TaskEvent;
+import com.example.async.service.SseConnectionRegistry;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.apache.kafka.clients.admin.AdminClientConfig;
 import org.apache.kafka.clients.admin.NewTopic;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
 import org.apache.kafka.clients.producer.ProducerConfig;
 import org.apache.kafka.common.serialization.StringDeserializer;
 import org.apache.kafka.common.serialization.StringSerializer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+import org.springframework.kafka.config.TopicBuilder;
 import org.springframework.kafka.core.*;
 import org.springframework.kafka.support.serializer.JsonDeserializer;
 import org.springframework.kafka.support.serializer.JsonSerializer;
@@ -21,7 +30,53 @@ import java.util.Map;
 public class KafkaConfig {
 
     private static final String BOOTSTRAP_SERVERS = "localhost:9092";
-    private static final String TOPIC_NAME = "task-events";
+    private static final String TOPIC_NAME = SseConnectionRegistry.BROADCAST_TOPIC;
+
+    @Value("${app.pod-id}")
+    private String podId;
+
+    // 批次監聽：每次 poll 最多取得的事件數，以及 broker 為湊滿 fetch-min-bytes 最多等待的時間
+    @Value("${app.kafka.listener.max-poll-records:500}")
+    private int maxPollRecords;
+
+    @Value("${app.kafka.listener.fetch-min-bytes:1}")
+    private int fetchMinBytes;
+
+    @Value("${app.kafka.listener.fetch-max-wait-ms:500}")
+    private int fetchMaxWaitMs;
+
+    // 事件 topic 的分區數與監聽執行緒數，事件以 SSE 連線 ID 為 key，同一連線維持順序、不同連線可並行處理
+    @Value("${app.kafka.events.partitions:1}")
+    private int eventPartitions;
+
+    @Value("${app.kafka.listener.concurrency:1}")
+    private int listenerConcurrency;
+
+    // 事件 producer：等待 linger-ms 湊批、壓縮，並以冪等傳送避免重試造成重複或亂序
+    @Value("${app.kafka.producer.linger-ms:5}")
+    private int producerLingerMs;
+
+    @Value("${app.kafka.producer.batch-size:65536}")
+    private int producerBatchSize;
+
+    @Value("${app.kafka.producer.compression-type:lz4}")
+    private String producerCompressionType;
+
+    @Value("${app.kafka.producer.enable-idempotence:true}")
+    private boolean producerIdempotence;
+
+    @Value("${app.kafka.producer.buffer-memory:33554432}")
+    private long producerBufferMemory;
+
+    @Value("${app.kafka.producer.max-block-ms:5000}")
+    private long producerMaxBlockMs;
+
+    // TaskEvent 的 Kafka 編碼格式 (json | binary)，可依 topic 覆寫；消費端會自動辨識兩種格式
+    @Value("${app.kafka.events.format:json}")
+    private String eventFormat;
+
+    @Value("${app.kafka.events.topic-formats:}")
+    private String eventTopicFormats;
 
     @Bean
     public KafkaAdmin kafkaAdmin() {
@@ -32,39 +87,117 @@ public class KafkaConfig {
 
     @Bean
     public NewTopic taskEventsTopic() {
-        return new NewTopic(TOPIC_NAME, 1, (short) 1);
+        return new NewTopic(TOPIC_NAME, eventPartitions, (short) 1);
+    }
+
+    // 本 pod 專屬的事件 topic，只有持有 SSE 連線的 pod 會消費
+    @Bean
+    public NewTopic podTaskEventsTopic() {
+        return new NewTopic(SseConnectionRegistry.podTopic(podId), eventPartitions, (short) 1);
+    }
+
+    // SSE 連線歸屬登記 topic，以連線 ID 為 key 壓縮保留最新歸屬
+    @Bean
+    public NewTopic connectionRegistryTopic() {
+        return TopicBuilder.name(SseConnectionRegistry.REGISTRY_TOPIC)
+                .partitions(1)
+                .replicas(1)
+                .compact()
+                .build();
+    }
+
+    @Bean
+    public TaskEventBinaryCodec taskEventBinaryCodec(ObjectMapper objectMapper) {
+        return new TaskEventBinaryCodec(objectMapper);
     }
 
     @Bean
-    public ProducerFactory<String, TaskEvent> producerFactory() {
+    public ProducerFactory<String, TaskEvent> producerFactory(TaskEventBinaryCodec taskEventBinaryCodec,
+                                                              MeterRegistry meterRegistry) {
         Map<String, Object> configProps = new HashMap<>();
         configProps.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, BOOTSTRAP_SERVERS);
         configProps.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
-        configProps.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, JsonSerializer.class);
-        return new DefaultKafkaProducerFactory<>(configProps);
+        configProps.put(ProducerConfig.LINGER_MS_CONFIG, producerLingerMs);
+        configProps.put(ProducerConfig.BATCH_SIZE_CONFIG, producerBatchSize);
+        configProps.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, producerCompressionType);
+        configProps.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, producerIdempotence);
+        if (producerIdempotence) {
+            configProps.put(ProducerConfig.ACKS_CONFIG, "all");
+        }
+        configProps.put(ProducerConfig.BUFFER_MEMORY_CONFIG, producerBufferMemory);
+        configProps.put(ProducerConfig.MAX_BLOCK_MS_CONFIG, producerMaxBlockMs);
+        TaskEventSerializer valueSerializer = new TaskEventSerializer(new JsonSerializer<>(), taskEventBinaryCodec,
+                TaskEventWireFormat.of(eventFormat), TaskEventWireFormat.parseTopicFormats(eventTopicFormats));
+        DefaultKafkaProducerFactory<String, TaskEvent> factory =
+                new DefaultKafkaProducerFactory<>(configProps, new StringSerializer(), valueSerializer);
+        factory.addListener(new MicrometerProducerListener<>(meterRegistry));
+        return factory;
     }
 
     @Bean
-    public KafkaTemplate<String, TaskEvent> kafkaTemplate() {
-        return new KafkaTemplate<>(producerFactory());
+    public KafkaTemplate<String, TaskEvent> kafkaTemplate(ProducerFactory<String, TaskEvent> producerFactory) {
+        return new KafkaTemplate<>(producerFactory);
     }
 
     @Bean
-    public ConsumerFactory<String, TaskEvent> consumerFactory() {
+    public ConsumerFactory<String, TaskEvent> consumerFactory(TaskEventBinaryCodec taskEventBinaryCodec,
+                                                              MeterRegistry meterRegistry) {
         Map<String, Object> props = new HashMap<>();
         props.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, BOOTSTRAP_SERVERS);
         props.put(ConsumerConfig.GROUP_ID_CONFIG, "sse-group");
         props.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
         props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, JsonDeserializer.class);
         props.put(JsonDeserializer.TRUSTED_PACKAGES, "com.example.async.model");
-        return new DefaultKafkaConsumerFactory<>(props, new StringDeserializer(),
-                new JsonDeserializer<>(TaskEvent.class, false));
+        props.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, maxPollRecords);
+        props.put(ConsumerConfig.FETCH_MIN_BYTES_CONFIG, fetchMinBytes);
+        props.put(ConsumerConfig.FETCH_MAX_WAIT_MS_CONFIG, fetchMaxWaitMs);
+        DefaultKafkaConsumerFactory<String, TaskEvent> factory = new DefaultKafkaConsumerFactory<>(props,
+                new StringDeserializer(),
+                new TaskEventDeserializer(new JsonDeserializer<>(TaskEvent.class, false), taskEventBinaryCodec));
+        // 輸出 Kafka 客戶端指標，其中 records-lag 即各分區的消費延遲
+        factory.addListener(new MicrometerConsumerListener<>(meterRegistry));
+        return factory;
     }
 
     @Bean
-    public ConcurrentKafkaListenerContainerFactory<String, TaskEvent> kafkaListenerContainerFactory() {
+    public ConcurrentKafkaListenerContainerFactory<String, TaskEvent> kafkaListenerContainerFactory(
+            ConsumerFactory<String, TaskEvent> consumerFactory) {
         ConcurrentKafkaListenerContainerFactory<String, TaskEvent> factory = new ConcurrentKafkaListenerContainerFactory<>();
-        factory.setConsumerFactory(consumerFactory());
+        factory.setConsumerFactory(consumerFactory);
+        // 一次交付整批事件，由服務依 SSE 連線分組後合併寫出
+        factory.setBatchListener(true);
+        // 每個執行緒各自負責部分分區，超過分區數的執行緒會閒置
+        factory.setConcurrency(listenerConcurrency);
+        return factory;
+    }
+
+    @Bean
+    public ProducerFactory<String, String> registryProducerFactory() {
+        Map<String, Object> configProps = new HashMap<>();
+        configProps.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, BOOTSTRAP_SERVERS);
+        configProps.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
+        configProps.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
+        return new DefaultKafkaProducerFactory<>(configProps);
+    }
+
+    @Bean
+    public KafkaTemplate<String, String> registryKafkaTemplate() {
+        return new KafkaTemplate<>(registryProducerFactory());
+    }
+
+    @Bean
+    public ConsumerFactory<String, String> registryConsumerFactory() {
+        Map<String, Object> props = new HashMap<>();
+        props.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, BOOTSTRAP_SERVERS);
+        props.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
+        props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
+        return new DefaultKafkaConsumerFactory<>(props);
+    }
+
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<String, String> registryListenerContainerFactory() {
+        ConcurrentKafkaListenerContainerFactory<String, String> factory = new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(registryConsumerFactory());
         return factory;
     }
 }
\ No newline at end of file
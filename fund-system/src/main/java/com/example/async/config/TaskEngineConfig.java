@@ -0,0 +1,42 @@
+package com.example.async.config;
+
+import com.example.async.engine.ScheduledSubtaskExecutionEngine;
+import com.example.async.engine.SubtaskExecutionEngine;
+import com.example.async.engine.VirtualThreadSubtaskExecutionEngine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@Slf4j
+public class TaskEngineConfig {
+
+    @Value("${app.task-engine.type:scheduled}")
+    private String engineType;
+
+    @Value("${app.task-engine.worker-threads:4}")
+    private int workerThreads;
+
+    @Value("${app.task-engine.max-concurrent-tasks:10000}")
+    private int maxConcurrentTasks;
+
+    @Value("${app.task-engine.queue-capacity:10000}")
+    private int queueCapacity;
+
+    @Bean(destroyMethod = "shutdown")
+    public SubtaskExecutionEngine subtaskExecutionEngine() {
+        SubtaskExecutionEngine engine;
+        if ("virtual".equalsIgnoreCase(engineType)) {
+            if (!VirtualThreadSubtaskExecutionEngine.isSupported()) {
+                throw new IllegalStateException("app.task-engine.type=virtual 需要 JDK 21 以上，目前版本: "
+                        + System.getProperty("java.version"));
+            }
+            engine = new VirtualThreadSubtaskExecutionEngine(maxConcurrentTasks, queueCapacity);
+        } else {
+            engine = new ScheduledSubtaskExecutionEngine(workerThreads, maxConcurrentTasks, queueCapacity);
+        }
+        log.info("子任務引擎: {}, 最大同時任務數: {}, 等待佇列深度: {}", engine.getName(), maxConcurrentTasks, queueCapacity);
+        return engine;
+    }
+}
@@ -1,17 +1,22 @@
 package com.example.async.controller;
 
-import com.example.async.model.SseRequest;
+import com.example.async.journal.JournalRecordsResource;
+import com.example.async.journal.TaskEventJournal;
 import com.example.async.model.TaskRequest;
+import com.example.async.service.TaskEventPublisher;
 import com.example.async.service.TaskService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.Resource;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
-import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.nio.ByteBuffer;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
 
 @RestController
 @RequestMapping("/api")
@@ -19,21 +24,55 @@ import java.util.List;
 @Slf4j
 @CrossOrigin("*")
 public class FundController {
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
     private final TaskService taskService;
+    private final TaskEventPublisher eventPublisher;
+    private final TaskEventJournal journal;
 
     @PostMapping("/fund-api")
     public ResponseEntity<String> initiateTask(@RequestBody TaskRequest taskRequest) {
         log.info("收到任務請求，關聯 ID: {}", taskRequest.getCorrelationId());
-        taskService.processTaskAsync(taskRequest);
+        try {
+            taskService.processTaskAsync(taskRequest);
+        } catch (RejectedExecutionException e) {
+            log.warn("系統忙碌，拒絕關聯 ID {} 的任務: {}", taskRequest.getCorrelationId(), e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .body("系統忙碌中，請稍後再試，關聯 ID: " + taskRequest.getCorrelationId());
+        }
         return ResponseEntity.status(HttpStatus.ACCEPTED)
                 .body("任務已啟動，關聯 ID: " + taskRequest.getCorrelationId());
     }
 
-    @PostMapping(value = "/fund-events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
-    public SseEmitter subscribeToEvents(@RequestBody SseRequest sseRequest) {
-        String correlationId = sseRequest.getCorrelationId();
-        List<String> taskIds = sseRequest.getTaskIds();
-        log.info("為關聯 ID {} (SSE Connection ID) 建立 SSE 連線，處理的任務 IDs: {}", correlationId, taskIds);
-        return taskService.createSseEmitter(correlationId, taskIds);
+    // Kafka 事件發布的傳送量、失敗數與延遲
+    @GetMapping("/fund-publisher-stats")
+    public TaskEventPublisher.Stats publisherStats() {
+        return eventPublisher.getStats();
+    }
+
+    /**
+     * 任務目前的狀態，即本 pod 事件日誌中該任務的最後一個事件。gateway 以路徑中的任務 ID 選擇 pod，回應 404 時會改問其他 pod。
+     */
+    @GetMapping("/tasks/{taskId}")
+    public ResponseEntity<Resource> taskStatus(@PathVariable String taskId) {
+        ByteBuffer latest = journal.latest(taskId);
+        if (latest == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(new JournalRecordsResource(Collections.singletonList(latest), "任務 " + taskId + " 的狀態"));
+    }
+
+    // 任務在日誌保留期間內的所有事件，每行一個 JSON
+    @GetMapping("/tasks/{taskId}/events")
+    public ResponseEntity<Resource> taskHistory(@PathVariable String taskId) {
+        List<ByteBuffer> records = journal.history(taskId);
+        if (records.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok()
+                .contentType(NDJSON)
+                .body(new JournalRecordsResource(records, "任務 " + taskId + " 的事件歷史"));
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,88 @@
+package com.example.async.controller;
+
+import com.example.async.model.SseRequest;
+import com.example.async.service.TaskService;
+import com.example.async.sse.MuxSession;
+import com.example.async.sse.MuxSessionRegistry;
+import com.example.async.sse.MuxedSseEmitter;
+import com.example.async.sse.SseConnectionLimits;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.List;
+
+/**
+ * Servlet 模式的 SSE 訂閱與 gateway 多工串流端點；以 reactive profile 啟動時改由 {@link ReactiveFundEventsController} 處理訂閱。
+ */
+@RestController
+@RequestMapping("/api")
+@RequiredArgsConstructor
+@Slf4j
+@CrossOrigin("*")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class FundEventsController {
+    private final TaskService taskService;
+    private final MuxSessionRegistry muxSessions;
+    private final SseConnectionLimits connectionLimits;
+
+    @PostMapping(value = "/fund-events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> subscribeToEvents(@RequestBody SseRequest sseRequest,
+                                                        @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        String correlationId = sseRequest.getCorrelationId();
+        List<String> taskIds = sseRequest.getTaskIds();
+        if (!taskService.tryAdmit(correlationId)) {
+            return rejected();
+        }
+        log.info("為關聯 ID {} (SSE Connection ID) 建立 SSE 連線，處理的任務 IDs: {}, Last-Event-ID: {}",
+                correlationId, taskIds, lastEventId);
+        return ResponseEntity.ok(taskService.createSseEmitter(correlationId, taskIds, lastEventId));
+    }
+
+    // gateway 的多工事件串流：每個 gateway 對本 pod 只開一條，經由它的 SSE 連線都以通道登記在這條串流上
+    @GetMapping(value = "/fund-events-mux", produces = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseBodyEmitter openMuxStream(@RequestParam String muxId) {
+        log.info("gateway 開啟多工事件串流 {}", muxId);
+        return muxSessions.open(muxId);
+    }
+
+    @PostMapping("/fund-events-mux/{muxId}/channels/{channelId}")
+    public ResponseEntity<Void> attachMuxChannel(@PathVariable String muxId, @PathVariable String channelId,
+                                                 @RequestBody SseRequest sseRequest,
+                                                 @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        if (!MuxSession.isValidChannelId(channelId) || sseRequest.getCorrelationId() == null) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (!taskService.tryAdmit(sseRequest.getCorrelationId())) {
+            return rejected();
+        }
+        MuxedSseEmitter emitter = muxSessions.openChannel(muxId, channelId);
+        if (emitter == null) {
+            return ResponseEntity.notFound().build();
+        }
+        log.info("在多工串流 {} 的通道 {} 上為關聯 ID {} 建立 SSE 連線，處理的任務 IDs: {}, Last-Event-ID: {}",
+                muxId, channelId, sseRequest.getCorrelationId(), sseRequest.getTaskIds(), lastEventId);
+        taskService.attachMuxedConnection(emitter, sseRequest.getCorrelationId(), sseRequest.getTaskIds(), lastEventId);
+        return ResponseEntity.noContent().build();
+    }
+
+    @DeleteMapping("/fund-events-mux/{muxId}/channels/{channelId}")
+    public ResponseEntity<Void> detachMuxChannel(@PathVariable String muxId, @PathVariable String channelId) {
+        muxSessions.closeChannel(muxId, channelId);
+        return ResponseEntity.noContent().build();
+    }
+
+    // 連線數已達上限：不建立 emitter，立即回應並提示客戶端稍後重試
+    private <T> ResponseEntity<T> rejected() {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(connectionLimits.getRetryAfterSeconds()))
+                .build();
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.async.controller;
+
+import com.example.async.model.SseRequest;
+import com.example.async.service.TaskService;
+import com.example.async.sse.FluxSseEmitter;
+import com.example.async.sse.SseConnectionLimits;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * WebFlux 模式的 SSE 訂閱端點 (spring profile reactive)：每條連線的事件經由 {@link FluxSseEmitter} 的有界佇列非阻塞地寫出。
+ * 事件在進入佇列前已預先編碼成 SSE 框架，這裡直接寫出原始位元組，不再經過 ServerSentEvent 的序列化。
+ */
+@RestController
+@RequestMapping("/api")
+@RequiredArgsConstructor
+@Slf4j
+@CrossOrigin("*")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveFundEventsController {
+    private final TaskService taskService;
+    private final SseConnectionLimits connectionLimits;
+
+    // 每條連線最多暫存的框架數，超過時視為慢速客戶端並結束連線
+    @Value("${app.sse.reactive.buffer-capacity:256}")
+    private int bufferCapacity;
+
+    @PostMapping(value = "/fund-events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Mono<Void> subscribeToEvents(@RequestBody SseRequest sseRequest,
+                                        @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId,
+                                        ServerHttpResponse response) {
+        String correlationId = sseRequest.getCorrelationId();
+        List<String> taskIds = sseRequest.getTaskIds();
+        if (!taskService.tryAdmit(correlationId)) {
+            // 連線數已達上限：不建立 emitter，立即回應並提示客戶端稍後重試
+            response.setStatusCode(HttpStatus.SERVICE_UNAVAILABLE);
+            response.getHeaders().set(HttpHeaders.RETRY_AFTER, String.valueOf(connectionLimits.getRetryAfterSeconds()));
+            return response.setComplete();
+        }
+        log.info("為關聯 ID {} (SSE Connection ID) 建立 WebFlux SSE 連線，處理的任務 IDs: {}, Last-Event-ID: {}",
+                correlationId, taskIds, lastEventId);
+        FluxSseEmitter emitter = new FluxSseEmitter(correlationId, bufferCapacity);
+        taskService.attachReactiveConnection(emitter, correlationId, taskIds, lastEventId);
+
+        response.getHeaders().setContentType(MediaType.TEXT_EVENT_STREAM);
+        response.getHeaders().setCacheControl("no-cache");
+        // 每個框架寫出後立即 flush，Kafka 一次 poll 的事件已在服務端合併成單一框架
+        return response.writeAndFlushWith(emitter.getFrames().map(Mono::just));
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.async.engine;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 以小型排程器實作的引擎：等待由單一排程執行緒計時，時間到後在固定大小的 worker 池上繼續執行後續步驟。
+ */
+public class ScheduledSubtaskExecutionEngine extends SubtaskExecutionEngine {
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(namedThreads("subtask-timer"));
+    private final ExecutorService workers;
+
+    public ScheduledSubtaskExecutionEngine(int workerThreads, int maxConcurrentTasks, int queueCapacity) {
+        super(maxConcurrentTasks, queueCapacity);
+        this.workers = Executors.newFixedThreadPool(workerThreads, namedThreads("subtask-worker"));
+    }
+
+    @Override
+    public CompletableFuture<Void> delay(long delay, TimeUnit unit) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        timer.schedule(() -> workers.execute(() -> future.complete(null)), delay, unit);
+        return future;
+    }
+
+    @Override
+    public String getName() {
+        return "scheduled";
+    }
+
+    @Override
+    protected void execute(Runnable command) {
+        workers.execute(command);
+    }
+
+    @Override
+    protected void shutdownExecutors() {
+        timer.shutdownNow();
+        workers.shutdown();
+    }
+
+    private static ThreadFactory namedThreads(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return r -> {
+            Thread thread = new Thread(r, prefix + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,129 @@
+package com.example.async.engine;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 子任務執行引擎。
+ * <p>
+ * 任務以 CompletableFuture 串接的步驟表示，等待 (模擬耗時操作) 透過 {@link #delay(long, TimeUnit)} 完成，
+ * 不會讓任何平台執行緒在任務執行期間被佔住。引擎本身限制同時執行的任務數與等待佇列深度，
+ * 超過上限的任務會以 {@link RejectedExecutionException} 立即拒絕。
+ * 任務的第一個步驟一律交給引擎的執行緒開始，提交端 (HTTP 請求執行緒) 與完成前一個任務的執行緒都不會被拖住。
+ */
+@Slf4j
+public abstract class SubtaskExecutionEngine {
+    private final int maxConcurrentTasks;
+    private final Semaphore runningPermits;
+    private final BlockingQueue<PendingTask> pendingTasks;
+
+    protected SubtaskExecutionEngine(int maxConcurrentTasks, int queueCapacity) {
+        this.maxConcurrentTasks = maxConcurrentTasks;
+        this.runningPermits = new Semaphore(maxConcurrentTasks);
+        this.pendingTasks = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+    }
+
+    /**
+     * 回傳一個在指定時間後完成的 future，後續串接的步驟會在引擎的執行緒上繼續執行。
+     */
+    public abstract CompletableFuture<Void> delay(long delay, TimeUnit unit);
+
+    public abstract String getName();
+
+    protected abstract void shutdownExecutors();
+
+    /**
+     * 在引擎的執行緒上執行 command，用於開始任務的第一個步驟。
+     */
+    protected abstract void execute(Runnable command);
+
+    /**
+     * 提交一個任務；有空位時立即開始，否則排入等待佇列，佇列已滿則拒絕。
+     */
+    public CompletableFuture<Void> submit(Supplier<CompletableFuture<Void>> task) {
+        if (runningPermits.tryAcquire()) {
+            CompletableFuture<Void> result = new CompletableFuture<>();
+            start(new PendingTask(task, result));
+            return result;
+        }
+
+        PendingTask pending = new PendingTask(task, new CompletableFuture<>());
+        if (!pendingTasks.offer(pending)) {
+            throw new RejectedExecutionException("子任務引擎已達上限，執行中: " + getRunningTasks()
+                    + ", 等待中: " + pendingTasks.size());
+        }
+        // 排入佇列期間可能剛好有任務結束，補一次排程避免任務滯留在佇列中
+        drainPending();
+        return pending.result;
+    }
+
+    public int getRunningTasks() {
+        return maxConcurrentTasks - runningPermits.availablePermits();
+    }
+
+    public int getPendingTasks() {
+        return pendingTasks.size();
+    }
+
+    public void shutdown() {
+        log.info("關閉子任務引擎 {}，執行中: {}, 等待中: {}", getName(), getRunningTasks(), getPendingTasks());
+        shutdownExecutors();
+    }
+
+    private void start(PendingTask pending) {
+        try {
+            execute(() -> run(pending));
+        } catch (RejectedExecutionException e) {
+            // 引擎已關閉
+            runningPermits.release();
+            pending.result.completeExceptionally(e);
+        }
+    }
+
+    private void run(PendingTask pending) {
+        CompletableFuture<Void> future;
+        try {
+            future = pending.task.get();
+        } catch (Throwable e) {
+            future = new CompletableFuture<>();
+            future.completeExceptionally(e);
+        }
+        future.whenComplete((result, error) -> {
+            runningPermits.release();
+            if (error != null) {
+                pending.result.completeExceptionally(error);
+            } else {
+                pending.result.complete(null);
+            }
+            drainPending();
+        });
+    }
+
+    private void drainPending() {
+        while (!pendingTasks.isEmpty() && runningPermits.tryAcquire()) {
+            PendingTask next = pendingTasks.poll();
+            if (next == null) {
+                runningPermits.release();
+                return;
+            }
+            start(next);
+        }
+    }
+
+    private static final class PendingTask {
+        private final Supplier<CompletableFuture<Void>> task;
+        private final CompletableFuture<Void> result;
+
+        private PendingTask(Supplier<CompletableFuture<Void>> task, CompletableFuture<Void> result) {
+            this.task = task;
+            this.result = result;
+        }
+    }
+}
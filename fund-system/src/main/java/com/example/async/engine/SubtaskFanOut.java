@@ -0,0 +1,139 @@
+package com.example.async.engine;
+
+import com.example.async.model.SubtaskFailurePolicy;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 以固定數量的「通道」並行執行子任務：每個通道完成一個子任務後再領取下一個索引，
+ * 因此同一任務同時執行的子任務數不會超過 maxParallel。maxParallel 為 1 時等同依序執行。
+ * <p>
+ * FAIL_FAST 在第一個失敗後不再領取新的子任務，但已在執行中的子任務仍會跑完；子任務的副作用 (例如發布完成事件)
+ * 應經過 {@link #runUnlessFailed}，失敗之後才完成的子任務就不會在任務的最終事件之後再送出事件。
+ */
+public final class SubtaskFanOut {
+    private final int count;
+    private final SubtaskFailurePolicy failurePolicy;
+    private final Subtask subtask;
+    private final AtomicInteger nextIndex = new AtomicInteger();
+    private final AtomicInteger activeLanes;
+    // FAIL_FAST 已有子任務失敗；寫入與 runUnlessFailed 都持有本物件的鎖
+    private boolean failed;
+    private final List<SubtaskFailure> failures = Collections.synchronizedList(new ArrayList<>());
+    private final CompletableFuture<List<SubtaskFailure>> result = new CompletableFuture<>();
+
+    private SubtaskFanOut(int count, int maxParallel, SubtaskFailurePolicy failurePolicy,
+                          Subtask subtask) {
+        this.count = count;
+        this.failurePolicy = failurePolicy;
+        this.subtask = subtask;
+        this.activeLanes = new AtomicInteger(Math.max(1, Math.min(maxParallel, count)));
+    }
+
+    /**
+     * 執行 count 個子任務。FAIL_FAST 時第一個失敗會讓回傳的 future 以該錯誤結束；
+     * COLLECT_ERRORS 時等所有子任務結束後回傳失敗清單 (全部成功則為空)。
+     */
+    public static CompletableFuture<List<SubtaskFailure>> run(int count, int maxParallel, SubtaskFailurePolicy failurePolicy,
+                                                             Subtask subtask) {
+        SubtaskFanOut fanOut = new SubtaskFanOut(count, maxParallel,
+                failurePolicy != null ? failurePolicy : SubtaskFailurePolicy.FAIL_FAST, subtask);
+        if (count <= 0) {
+            fanOut.result.complete(Collections.emptyList());
+            return fanOut.result;
+        }
+        for (int lane = fanOut.activeLanes.get(); lane > 0; lane--) {
+            fanOut.runNext();
+        }
+        return fanOut.result;
+    }
+
+    private void runNext() {
+        int index = nextIndex.getAndIncrement();
+        if (index >= count || isFailed()) {
+            if (activeLanes.decrementAndGet() == 0) {
+                result.complete(new ArrayList<>(failures));
+            }
+            return;
+        }
+
+        CompletableFuture<Void> future;
+        try {
+            future = subtask.start(index, this);
+        } catch (Throwable e) {
+            future = new CompletableFuture<>();
+            future.completeExceptionally(e);
+        }
+        future.whenComplete((v, error) -> {
+            if (error != null) {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                failures.add(new SubtaskFailure(index, cause));
+                if (failurePolicy == SubtaskFailurePolicy.FAIL_FAST && markFailed()) {
+                    result.completeExceptionally(cause);
+                }
+            }
+            runNext();
+        });
+    }
+
+    /**
+     * FAIL_FAST 尚未有子任務失敗時執行 action 並回傳 true，否則不執行並回傳 false。與標記失敗互斥，
+     * 因此 action 不是在失敗之前執行完畢，就是完全不執行；COLLECT_ERRORS 時一律執行。
+     */
+    public synchronized boolean runUnlessFailed(Runnable action) {
+        if (failed) {
+            return false;
+        }
+        action.run();
+        return true;
+    }
+
+    private synchronized boolean isFailed() {
+        return failed;
+    }
+
+    // 第一次標記時回傳 true
+    private synchronized boolean markFailed() {
+        if (failed) {
+            return false;
+        }
+        failed = true;
+        return true;
+    }
+
+    /**
+     * 一個子任務。fanOut 用來在產生副作用前確認任務尚未因其他子任務失敗而結束。
+     */
+    @FunctionalInterface
+    public interface Subtask {
+        CompletableFuture<Void> start(int subtaskId, SubtaskFanOut fanOut);
+    }
+
+    public static final class SubtaskFailure {
+        private final int subtaskId;
+        private final Throwable error;
+
+        public SubtaskFailure(int subtaskId, Throwable error) {
+            this.subtaskId = subtaskId;
+            this.error = error;
+        }
+
+        public int getSubtaskId() {
+            return subtaskId;
+        }
+
+        public Throwable getError() {
+            return error;
+        }
+
+        @Override
+        public String toString() {
+            return "子任務 " + subtaskId + ": " + error.getMessage();
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.async.engine;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 以虛擬執行緒實作的引擎：每個等待步驟在自己的虛擬執行緒上 sleep，阻塞時不佔用平台執行緒。
+ * <p>
+ * 專案以 JDK 17 編譯，因此透過反射取得 {@code Executors.newVirtualThreadPerTaskExecutor()}，
+ * 只有在 JDK 21 以上執行時才能選用此引擎。
+ */
+public class VirtualThreadSubtaskExecutionEngine extends SubtaskExecutionEngine {
+    private final ExecutorService executor;
+
+    public VirtualThreadSubtaskExecutionEngine(int maxConcurrentTasks, int queueCapacity) {
+        super(maxConcurrentTasks, queueCapacity);
+        this.executor = createVirtualThreadExecutor();
+    }
+
+    public static boolean isSupported() {
+        try {
+            Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public CompletableFuture<Void> delay(long delay, TimeUnit unit) {
+        return CompletableFuture.runAsync(() -> {
+            try {
+                unit.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("虛擬執行緒等待被中斷", e);
+            }
+        }, executor);
+    }
+
+    @Override
+    public String getName() {
+        return "virtual";
+    }
+
+    @Override
+    protected void execute(Runnable command) {
+        executor.execute(command);
+    }
+
+    @Override
+    protected void shutdownExecutors() {
+        executor.shutdown();
+    }
+
+    private static ExecutorService createVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("目前的 JDK 不支援虛擬執行緒，請使用 JDK 21 以上或改用 scheduled 引擎", e);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.async.journal;
+
+import org.springframework.core.io.AbstractResource;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * 把日誌記錄的映射記憶體切片當成回應本文，事件 JSON 不經過反序列化也不另外組成字串。
+ * <p>
+ * 這不是零複製：ResourceHttpMessageConverter 以 getInputStream 讀取，資料會從映射記憶體複製到轉換器的
+ * 暫存陣列，再寫入容器的輸出緩衝區。Servlet API 沒有接受 ByteBuffer 的寫出方法，而且同一任務的記錄在日誌中
+ * 不連續，無法用 sendfile。
+ */
+public class JournalRecordsResource extends AbstractResource {
+    private final List<ByteBuffer> records;
+    private final String description;
+
+    public JournalRecordsResource(List<ByteBuffer> records, String description) {
+        this.records = records;
+        this.description = description;
+    }
+
+    @Override
+    public InputStream getInputStream() {
+        return new RecordsInputStream(records);
+    }
+
+    @Override
+    public long contentLength() {
+        long length = 0;
+        for (ByteBuffer record : records) {
+            length += record.remaining();
+        }
+        return length;
+    }
+
+    @Override
+    public boolean exists() {
+        return true;
+    }
+
+    @Override
+    public String getDescription() {
+        return description;
+    }
+
+    private static final class RecordsInputStream extends InputStream {
+        private final List<ByteBuffer> records;
+        private int current;
+        private ByteBuffer buffer;
+
+        private RecordsInputStream(List<ByteBuffer> records) {
+            this.records = records;
+        }
+
+        @Override
+        public int read() {
+            ByteBuffer next = next();
+            return next == null ? -1 : next.get() & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] target, int offset, int length) {
+            if (length == 0) {
+                return 0;
+            }
+            ByteBuffer next = next();
+            if (next == null) {
+                return -1;
+            }
+            int count = Math.min(length, next.remaining());
+            next.get(target, offset, count);
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return buffer != null ? buffer.remaining() : 0;
+        }
+
+        private ByteBuffer next() {
+            while (buffer == null || !buffer.hasRemaining()) {
+                if (current == records.size()) {
+                    return null;
+                }
+                // 每個讀取者使用自己的 position，切片本身可重複讀取
+                buffer = records.get(current++).duplicate();
+            }
+            return buffer;
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.example.async.journal;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 日誌的一個區段檔，整個檔案以 MappedByteBuffer 映射，只在尾端附加。
+ * <p>
+ * 記錄格式為 {@code [int 本文長度][short 任務 ID 長度][任務 ID][事件 JSON + '\n']}。
+ * 先寫本文、最後才寫長度，長度欄位就是提交標記：映射的檔案預先填 0，長度為 0 的位置即為區段結尾，
+ * 寫到一半中斷的記錄在重新開啟時會被視為結尾而捨棄。寫入由 {@link TaskEventJournal} 序列化。
+ */
+final class JournalSegment {
+    static final String SUFFIX = ".journal";
+    private static final int HEADER_BYTES = Integer.BYTES + Short.BYTES;
+
+    private final long baseOffset;
+    private final Path path;
+    private final MappedByteBuffer buffer;
+    private volatile int writePosition;
+    private volatile long lastAppendMillis;
+
+    private JournalSegment(long baseOffset, Path path, MappedByteBuffer buffer, long lastAppendMillis) {
+        this.baseOffset = baseOffset;
+        this.path = path;
+        this.buffer = buffer;
+        this.lastAppendMillis = lastAppendMillis;
+    }
+
+    static JournalSegment create(Path dir, long baseOffset, int capacity) throws IOException {
+        Path path = dir.resolve(String.format("%020d%s", baseOffset, SUFFIX));
+        return new JournalSegment(baseOffset, path, map(path, capacity), System.currentTimeMillis());
+    }
+
+    /**
+     * 重新開啟既有的區段檔，逐筆掃描到第一個未提交的位置，並把每筆記錄交給 visitor 重建索引。
+     */
+    static JournalSegment open(Path path, RecordVisitor visitor) throws IOException {
+        String name = path.getFileName().toString();
+        long baseOffset = Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+        JournalSegment segment = new JournalSegment(baseOffset, path, map(path, (int) Files.size(path)),
+                Files.getLastModifiedTime(path).toMillis());
+        segment.recover(visitor);
+        return segment;
+    }
+
+    private static MappedByteBuffer map(Path path, int capacity) throws IOException {
+        // 映射建立後即可關閉 channel，映射在 buffer 被回收前都有效
+        try (FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        }
+    }
+
+    private void recover(RecordVisitor visitor) {
+        int position = 0;
+        int capacity = buffer.capacity();
+        while (position + HEADER_BYTES <= capacity) {
+            int length = buffer.getInt(position);
+            if (length < Short.BYTES || position + Integer.BYTES + length > capacity) {
+                break;
+            }
+            int keyLength = buffer.getShort(position + Integer.BYTES) & 0xFFFF;
+            byte[] key = new byte[keyLength];
+            buffer.get(position + HEADER_BYTES, key);
+            visitor.visit(new String(key, StandardCharsets.UTF_8), baseOffset + position);
+            position += Integer.BYTES + length;
+        }
+        writePosition = position;
+    }
+
+    static int recordSize(byte[] key, byte[] payload) {
+        return HEADER_BYTES + key.length + payload.length + 1;
+    }
+
+    /**
+     * 附加一筆記錄並回傳其全域位置；區段剩餘空間不足時回傳 -1，由呼叫端換到新的區段。
+     */
+    long append(byte[] key, byte[] payload) {
+        int position = writePosition;
+        int size = recordSize(key, payload);
+        if (position + size > buffer.capacity()) {
+            return -1;
+        }
+        int at = position + HEADER_BYTES;
+        buffer.putShort(position + Integer.BYTES, (short) key.length);
+        buffer.put(at, key);
+        at += key.length;
+        buffer.put(at, payload);
+        buffer.put(at + payload.length, (byte) '\n');
+        buffer.putInt(position, size - Integer.BYTES);
+        writePosition = position + size;
+        lastAppendMillis = System.currentTimeMillis();
+        return baseOffset + position;
+    }
+
+    /**
+     * 指定位置記錄的事件 JSON，直接是映射記憶體的唯讀切片，不複製也不反序列化。
+     */
+    ByteBuffer payload(long globalPosition, boolean withNewline) {
+        int position = (int) (globalPosition - baseOffset);
+        int length = buffer.getInt(position);
+        int keyLength = buffer.getShort(position + Integer.BYTES) & 0xFFFF;
+        int start = position + HEADER_BYTES + keyLength;
+        int end = position + Integer.BYTES + length - (withNewline ? 0 : 1);
+        return buffer.slice(start, end - start).asReadOnlyBuffer();
+    }
+
+    boolean contains(long globalPosition) {
+        return globalPosition >= baseOffset && globalPosition < baseOffset + writePosition;
+    }
+
+    long getBaseOffset() {
+        return baseOffset;
+    }
+
+    long getEndOffset() {
+        return baseOffset + writePosition;
+    }
+
+    int getSize() {
+        return writePosition;
+    }
+
+    long getLastAppendMillis() {
+        return lastAppendMillis;
+    }
+
+    Path getPath() {
+        return path;
+    }
+
+    interface RecordVisitor {
+        void visit(String taskId, long globalPosition);
+    }
+}
@@ -0,0 +1,273 @@
+package com.example.async.journal;
+
+import com.example.async.model.TaskEvent;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * 本 pod 收到的任務事件日誌：Kafka 監聽執行緒把每個事件附加到記憶體映射的區段檔，
+ * 以任務 ID 建立記錄位置索引，狀態查詢與歷史串流直接讀取映射記憶體，不需要回頭讀 Kafka 或重跑任務。
+ * <p>
+ * 位置是跨區段遞增的位元組位移 (區段起始位移 + 區段內位移)，區段寫滿時換到新的區段；
+ * 超過保留時間或數量的舊區段由背景執行緒刪除，索引中落在已刪除區段的位置一併移除。
+ * 映射的頁面在程序崩潰後仍會寫回檔案，重新啟動時掃描區段檔重建索引；主機當機則可能遺失尚未寫回的尾端。
+ */
+@Component
+@Slf4j
+public class TaskEventJournal {
+    private final ObjectMapper objectMapper;
+    private final Path directory;
+    private final int segmentBytes;
+    private final long retentionMillis;
+    private final int maxSegments;
+    // 區段起始位移 -> 區段，最後一個為寫入中的區段
+    private final ConcurrentSkipListMap<Long, JournalSegment> segments = new ConcurrentSkipListMap<>();
+    private final Map<String, TaskOffsets> index = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService retention = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "task-journal-retention");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private JournalSegment active;
+
+    public TaskEventJournal(ObjectMapper objectMapper,
+                            @Value("${app.journal.dir:${java.io.tmpdir}/task-journal/${app.pod-id}}") String directory,
+                            @Value("${app.journal.segment-bytes:67108864}") int segmentBytes,
+                            @Value("${app.journal.retention-ms:86400000}") long retentionMillis,
+                            @Value("${app.journal.max-segments:16}") int maxSegments) {
+        this.objectMapper = objectMapper;
+        this.directory = Paths.get(directory);
+        this.segmentBytes = segmentBytes;
+        this.retentionMillis = retentionMillis;
+        this.maxSegments = Math.max(1, maxSegments);
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        Files.createDirectories(directory);
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(directory)) {
+            files = listing.filter(path -> path.getFileName().toString().endsWith(JournalSegment.SUFFIX))
+                    .sorted()
+                    .toList();
+        }
+        for (Path file : files) {
+            JournalSegment segment = JournalSegment.open(file, this::indexRecord);
+            segments.put(segment.getBaseOffset(), segment);
+        }
+        synchronized (this) {
+            active = segments.isEmpty() ? roll(0) : segments.lastEntry().getValue();
+        }
+        log.info("任務事件日誌位於 {}，載入 {} 個區段、{} 個任務", directory, segments.size(), index.size());
+
+        long periodMillis = Math.max(1000, Math.min(retentionMillis / 4, TimeUnit.MINUTES.toMillis(1)));
+        retention.scheduleAtFixedRate(this::enforceRetention, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        retention.shutdownNow();
+    }
+
+    /**
+     * 依序附加一次 poll 取得的事件。寫入失敗只記錄錯誤，不影響事件推送給 SSE 連線。
+     */
+    public void appendAll(List<TaskEvent> events) {
+        for (TaskEvent event : events) {
+            String taskId = event.getCorrelationId();
+            if (taskId == null) {
+                continue;
+            }
+            byte[] key = taskId.getBytes(StandardCharsets.UTF_8);
+            byte[] payload;
+            try {
+                payload = objectMapper.writeValueAsBytes(event);
+            } catch (JsonProcessingException e) {
+                log.error("序列化任務 {} 的事件時出錯，未寫入日誌", taskId, e);
+                continue;
+            }
+            if (key.length > 0xFFFF || JournalSegment.recordSize(key, payload) > segmentBytes) {
+                log.warn("任務 {} 的事件超過日誌區段大小 {} bytes，未寫入日誌", taskId, segmentBytes);
+                continue;
+            }
+            try {
+                indexRecord(taskId, append(key, payload));
+            } catch (IOException e) {
+                log.error("寫入任務 {} 的事件到日誌時出錯", taskId, e);
+            }
+        }
+    }
+
+    private synchronized long append(byte[] key, byte[] payload) throws IOException {
+        long position = active.append(key, payload);
+        if (position < 0) {
+            active = roll(active.getEndOffset());
+            position = active.append(key, payload);
+        }
+        return position;
+    }
+
+    private JournalSegment roll(long baseOffset) throws IOException {
+        JournalSegment segment = JournalSegment.create(directory, baseOffset, segmentBytes);
+        segments.put(baseOffset, segment);
+        log.debug("任務事件日誌換到新的區段 {}", segment.getPath());
+        return segment;
+    }
+
+    private void indexRecord(String taskId, long position) {
+        // 在 map 的鎖內加入，不會與保留策略移除空索引的動作交錯
+        index.compute(taskId, (id, offsets) -> {
+            TaskOffsets target = offsets != null ? offsets : new TaskOffsets();
+            target.add(position);
+            return target;
+        });
+    }
+
+    /**
+     * 任務最後一個事件的 JSON (映射記憶體的唯讀切片)；本 pod 沒有此任務的事件時回傳 null。
+     */
+    public ByteBuffer latest(String taskId) {
+        TaskOffsets offsets = index.get(taskId);
+        long position = offsets != null ? offsets.last() : -1;
+        return position < 0 ? null : read(position, false);
+    }
+
+    /**
+     * 任務在保留期間內的所有事件，依附加順序，每筆為以換行結尾的 JSON (NDJSON)。
+     */
+    public List<ByteBuffer> history(String taskId) {
+        TaskOffsets offsets = index.get(taskId);
+        if (offsets == null) {
+            return Collections.emptyList();
+        }
+        List<ByteBuffer> records = new ArrayList<>();
+        for (long position : offsets.snapshot()) {
+            ByteBuffer record = read(position, true);
+            if (record != null) {
+                records.add(record);
+            }
+        }
+        return records;
+    }
+
+    private ByteBuffer read(long position, boolean withNewline) {
+        Map.Entry<Long, JournalSegment> entry = segments.floorEntry(position);
+        if (entry == null || !entry.getValue().contains(position)) {
+            // 所在區段已被保留策略刪除
+            return null;
+        }
+        return entry.getValue().payload(position, withNewline);
+    }
+
+    private void enforceRetention() {
+        long expireBefore = System.currentTimeMillis() - retentionMillis;
+        List<JournalSegment> removed = new ArrayList<>();
+        synchronized (this) {
+            Iterator<JournalSegment> iterator = segments.values().iterator();
+            int remaining = segments.size();
+            while (iterator.hasNext()) {
+                JournalSegment segment = iterator.next();
+                if (segment == active
+                        || (remaining <= maxSegments && segment.getLastAppendMillis() >= expireBefore)) {
+                    break;
+                }
+                iterator.remove();
+                removed.add(segment);
+                remaining--;
+            }
+        }
+        if (removed.isEmpty()) {
+            return;
+        }
+        long firstRetained = segments.firstKey();
+        for (String taskId : index.keySet()) {
+            index.computeIfPresent(taskId, (id, offsets) -> offsets.pruneBefore(firstRetained) ? null : offsets);
+        }
+        for (JournalSegment segment : removed) {
+            try {
+                Files.deleteIfExists(segment.getPath());
+            } catch (IOException e) {
+                log.warn("刪除過期的日誌區段 {} 時出錯", segment.getPath(), e);
+            }
+        }
+        log.info("刪除 {} 個過期的任務事件日誌區段，保留 {} 個區段、{} 個任務", removed.size(), segments.size(), index.size());
+    }
+
+    public int segmentCount() {
+        return segments.size();
+    }
+
+    public long sizeBytes() {
+        long total = 0;
+        for (JournalSegment segment : segments.values()) {
+            total += segment.getSize();
+        }
+        return total;
+    }
+
+    public int taskCount() {
+        return index.size();
+    }
+
+    /**
+     * 單一任務的記錄位置，以可成長的 long 陣列保存，避免每筆記錄一個物件。
+     */
+    private static final class TaskOffsets {
+        private long[] positions = new long[4];
+        private int size;
+
+        synchronized void add(long position) {
+            if (size == positions.length) {
+                positions = Arrays.copyOf(positions, size * 2);
+            }
+            positions[size++] = position;
+        }
+
+        synchronized long last() {
+            return size == 0 ? -1 : positions[size - 1];
+        }
+
+        synchronized long[] snapshot() {
+            return Arrays.copyOf(positions, size);
+        }
+
+        /**
+         * 移除已刪除區段中的位置，回傳 true 表示此任務已沒有任何記錄。
+         */
+        synchronized boolean pruneBefore(long firstRetained) {
+            int from = 0;
+            while (from < size && positions[from] < firstRetained) {
+                from++;
+            }
+            if (from > 0) {
+                System.arraycopy(positions, from, positions, 0, size - from);
+                size -= from;
+            }
+            return size == 0;
+        }
+    }
+}
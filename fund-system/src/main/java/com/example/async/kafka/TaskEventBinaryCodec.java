@@ -0,0 +1,369 @@
+package com.example.async.kafka;
+
+import com.example.async.model.TaskEvent;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.kafka.common.errors.SerializationException;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * TaskEvent 的精簡二進位編碼：
+ * <pre>
+ * magic(1) version(1) flags(版本 1 為 1 個位元組，版本 2 為 varint) status(1 [+ 字串])
+ * [sseConnectionId 字串] [taskIndex varint] [correlationId 字串] [message 字串] [result 型別(1) + 內容]
+ * [publishedAt varlong]
+ * </pre>
+ * 字串為 varint 長度加 UTF-8 位元組，狀態以一個位元組的代碼表示，不在代碼表內的狀態才寫出字串。
+ * correlationId 等於 {@code sseConnectionId-taskIndex} 時不重複寫出。magic 取 0xC1，
+ * 它不可能是 UTF-8 JSON 的第一個位元組，反序列化端據此區分兩種格式。
+ * <p>
+ * 版本 1 的 flags 只有一個位元組，第 0-7 位元已全部使用 (第 7 位元為 HAS_PUBLISHED_AT)。之後新增的欄位附加在尾端，
+ * 旗標使用第 8 位元以上，事件用到這些旗標時編碼端改寫出版本 2，flags 改以 varint 寫出；只用到前 8 個旗標的事件
+ * 仍寫出版本 1，與目前線上的格式相同。解碼端兩個版本都接受，舊版解碼端會拒絕版本 2，因此必須先部署解碼端。
+ */
+public class TaskEventBinaryCodec {
+    public static final byte MAGIC = (byte) 0xC1;
+    public static final byte VERSION = 1;
+    // flags 以 varint 寫出，可使用第 8 位元以上的旗標
+    public static final byte VERSION_VARINT_FLAGS = 2;
+
+    private static final int FINAL_EVENT = 1;
+    private static final int HAS_SSE_CONNECTION_ID = 1 << 1;
+    private static final int HAS_TASK_INDEX = 1 << 2;
+    private static final int HAS_CORRELATION_ID = 1 << 3;
+    private static final int CORRELATION_ID_DERIVED = 1 << 4;
+    private static final int HAS_MESSAGE = 1 << 5;
+    private static final int HAS_RESULT = 1 << 6;
+    private static final int HAS_PUBLISHED_AT = 1 << 7;
+
+    // 代碼即陣列索引，只能在尾端新增
+    private static final String[] STATUS_CODES = {
+            null, "PROCESSING", "SUBTASK_COMPLETED", "COMPLETED", "FAILED",
+            "CONNECTED", "HEARTBEAT", "ALL_TASKS_COMPLETED"
+    };
+    private static final int CUSTOM_STATUS = 0x7F;
+
+    private static final int RESULT_STRING = 1;
+    private static final int RESULT_STRING_LIST = 2;
+    private static final int RESULT_JSON = 3;
+
+    private final ObjectMapper objectMapper;
+
+    public TaskEventBinaryCodec(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    public static boolean isBinary(byte[] data) {
+        return data != null && data.length > 0 && data[0] == MAGIC;
+    }
+
+    public byte[] encode(TaskEvent event) {
+        String correlationId = event.getCorrelationId();
+        String sseConnectionId = event.getSseConnectionId();
+        Integer taskIndex = event.getTaskIndex();
+        boolean derived = isDerived(correlationId, sseConnectionId, taskIndex);
+        int flags = 0;
+        if (event.isFinalEvent()) {
+            flags |= FINAL_EVENT;
+        }
+        if (sseConnectionId != null) {
+            flags |= HAS_SSE_CONNECTION_ID;
+        }
+        if (taskIndex != null) {
+            flags |= HAS_TASK_INDEX;
+        }
+        if (derived) {
+            flags |= CORRELATION_ID_DERIVED;
+        } else if (correlationId != null) {
+            flags |= HAS_CORRELATION_ID;
+        }
+        if (event.getMessage() != null) {
+            flags |= HAS_MESSAGE;
+        }
+        if (event.getResult() != null) {
+            flags |= HAS_RESULT;
+        }
+        if (event.getPublishedAt() != null) {
+            flags |= HAS_PUBLISHED_AT;
+        }
+
+        Output out = new Output(128);
+        out.write(MAGIC);
+        if (flags > 0xFF) {
+            out.write(VERSION_VARINT_FLAGS);
+            out.writeVarint(flags);
+        } else {
+            out.write(VERSION);
+            out.write(flags);
+        }
+
+        int statusCode = statusCode(event.getStatus());
+        out.write(statusCode);
+        if (statusCode == CUSTOM_STATUS) {
+            out.writeString(event.getStatus());
+        }
+        if (sseConnectionId != null) {
+            out.writeString(sseConnectionId);
+        }
+        if (taskIndex != null) {
+            out.writeVarint(taskIndex);
+        }
+        if ((flags & HAS_CORRELATION_ID) != 0) {
+            out.writeString(correlationId);
+        }
+        if (event.getMessage() != null) {
+            out.writeString(event.getMessage());
+        }
+        if (event.getResult() != null) {
+            writeResult(out, event.getResult());
+        }
+        if (event.getPublishedAt() != null) {
+            out.writeVarlong(event.getPublishedAt());
+        }
+        return out.toByteArray();
+    }
+
+    public TaskEvent decode(byte[] data) {
+        try {
+            Input in = new Input(data);
+            if (in.read() != (MAGIC & 0xFF)) {
+                throw new SerializationException("不是二進位格式的 TaskEvent");
+            }
+            int version = in.read();
+            int flags;
+            if (version == VERSION) {
+                flags = in.read();
+            } else if (version == VERSION_VARINT_FLAGS) {
+                flags = in.readVarint();
+            } else {
+                throw new SerializationException("不支援的 TaskEvent 二進位格式版本: " + version);
+            }
+            int statusCode = in.read();
+            TaskEvent event = new TaskEvent();
+            event.setFinalEvent((flags & FINAL_EVENT) != 0);
+            event.setStatus(statusCode == CUSTOM_STATUS ? in.readString() : status(statusCode));
+            if ((flags & HAS_SSE_CONNECTION_ID) != 0) {
+                event.setSseConnectionId(in.readString());
+            }
+            if ((flags & HAS_TASK_INDEX) != 0) {
+                event.setTaskIndex(in.readVarint());
+            }
+            if ((flags & HAS_CORRELATION_ID) != 0) {
+                event.setCorrelationId(in.readString());
+            } else if ((flags & CORRELATION_ID_DERIVED) != 0) {
+                event.setCorrelationId(event.getSseConnectionId() + "-" + event.getTaskIndex());
+            }
+            if ((flags & HAS_MESSAGE) != 0) {
+                event.setMessage(in.readString());
+            }
+            if ((flags & HAS_RESULT) != 0) {
+                event.setResult(readResult(in));
+            }
+            if ((flags & HAS_PUBLISHED_AT) != 0) {
+                event.setPublishedAt(in.readVarlong());
+            }
+            return event;
+        } catch (ArrayIndexOutOfBoundsException | IOException e) {
+            throw new SerializationException("無法解析二進位格式的 TaskEvent", e);
+        }
+    }
+
+    private static boolean isDerived(String correlationId, String sseConnectionId, Integer taskIndex) {
+        if (correlationId == null || sseConnectionId == null || taskIndex == null) {
+            return false;
+        }
+        int prefix = sseConnectionId.length();
+        String index = taskIndex.toString();
+        return correlationId.length() == prefix + 1 + index.length()
+                && correlationId.startsWith(sseConnectionId)
+                && correlationId.charAt(prefix) == '-'
+                && correlationId.endsWith(index);
+    }
+
+    private static int statusCode(String status) {
+        if (status == null) {
+            return 0;
+        }
+        for (int i = 1; i < STATUS_CODES.length; i++) {
+            if (STATUS_CODES[i].equals(status)) {
+                return i;
+            }
+        }
+        return CUSTOM_STATUS;
+    }
+
+    private static String status(int code) {
+        if (code < 0 || code >= STATUS_CODES.length) {
+            throw new SerializationException("未知的 TaskEvent 狀態代碼: " + code);
+        }
+        return STATUS_CODES[code];
+    }
+
+    private void writeResult(Output out, Object result) {
+        if (result instanceof String) {
+            out.write(RESULT_STRING);
+            out.writeString((String) result);
+            return;
+        }
+        if (result instanceof List && isStringList((List<?>) result)) {
+            List<?> values = (List<?>) result;
+            out.write(RESULT_STRING_LIST);
+            out.writeVarint(values.size());
+            for (Object value : values) {
+                out.writeString((String) value);
+            }
+            return;
+        }
+        // 其他型別維持與 JSON 格式相同的語意：反序列化後為 Map/List/基本型別
+        try {
+            out.write(RESULT_JSON);
+            out.writeBytes(objectMapper.writeValueAsBytes(result));
+        } catch (IOException e) {
+            throw new SerializationException("無法序列化 TaskEvent 的 result", e);
+        }
+    }
+
+    private Object readResult(Input in) throws IOException {
+        int type = in.read();
+        switch (type) {
+            case RESULT_STRING:
+                return in.readString();
+            case RESULT_STRING_LIST:
+                int size = in.readVarint();
+                List<String> values = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    values.add(in.readString());
+                }
+                return values;
+            case RESULT_JSON:
+                return objectMapper.readValue(in.readBytes(), Object.class);
+            default:
+                throw new SerializationException("未知的 TaskEvent result 型別: " + type);
+        }
+    }
+
+    private static boolean isStringList(List<?> values) {
+        for (Object value : values) {
+            if (!(value instanceof String)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static final class Output {
+        private byte[] buf;
+        private int count;
+
+        private Output(int capacity) {
+            buf = new byte[capacity];
+        }
+
+        private void write(int b) {
+            ensure(1);
+            buf[count++] = (byte) b;
+        }
+
+        private void writeVarint(int value) {
+            ensure(5);
+            while ((value & ~0x7F) != 0) {
+                buf[count++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buf[count++] = (byte) value;
+        }
+
+        private void writeVarlong(long value) {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                buf[count++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buf[count++] = (byte) value;
+        }
+
+        private void writeString(String value) {
+            writeBytes(value.getBytes(StandardCharsets.UTF_8));
+        }
+
+        private void writeBytes(byte[] bytes) {
+            writeVarint(bytes.length);
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, buf, count, bytes.length);
+            count += bytes.length;
+        }
+
+        private void ensure(int extra) {
+            if (count + extra > buf.length) {
+                buf = Arrays.copyOf(buf, Math.max(buf.length * 2, count + extra));
+            }
+        }
+
+        private byte[] toByteArray() {
+            return Arrays.copyOf(buf, count);
+        }
+    }
+
+    private static final class Input {
+        private final byte[] data;
+        private int position;
+
+        private Input(byte[] data) {
+            this.data = data;
+        }
+
+        private int read() {
+            return data[position++] & 0xFF;
+        }
+
+        private int readVarint() {
+            int value = 0;
+            for (int shift = 0; shift < 32; shift += 7) {
+                int b = read();
+                value |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new SerializationException("varint 長度超過 32 位元");
+        }
+
+        private long readVarlong() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = read();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new SerializationException("varlong 長度超過 64 位元");
+        }
+
+        private String readString() {
+            int length = readVarint();
+            checkRemaining(length);
+            String value = new String(data, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return value;
+        }
+
+        private byte[] readBytes() {
+            int length = readVarint();
+            checkRemaining(length);
+            byte[] bytes = Arrays.copyOfRange(data, position, position + length);
+            position += length;
+            return bytes;
+        }
+
+        private void checkRemaining(int length) {
+            if (length < 0 || length > data.length - position) {
+                throw new SerializationException("TaskEvent 二進位資料長度不正確");
+            }
+        }
+    }
+}
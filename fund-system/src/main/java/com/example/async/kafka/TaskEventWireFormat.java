@@ -0,0 +1,38 @@
+package com.example.async.kafka;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * TaskEvent 在 Kafka 上的編碼格式。
+ */
+public enum TaskEventWireFormat {
+    JSON,
+    BINARY;
+
+    public static TaskEventWireFormat of(String value) {
+        return valueOf(value.trim().toUpperCase(Locale.ROOT));
+    }
+
+    /**
+     * 解析以逗號分隔的 {@code topic=格式} 設定，例如 {@code task-events=json,task-events-*=binary}。
+     */
+    public static Map<String, TaskEventWireFormat> parseTopicFormats(String spec) {
+        Map<String, TaskEventWireFormat> formats = new LinkedHashMap<>();
+        if (spec == null || spec.trim().isEmpty()) {
+            return formats;
+        }
+        for (String entry : spec.split(",")) {
+            if (entry.trim().isEmpty()) {
+                continue;
+            }
+            int separator = entry.indexOf('=');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("topic 編碼格式設定不正確: " + entry);
+            }
+            formats.put(entry.substring(0, separator).trim(), of(entry.substring(separator + 1)));
+        }
+        return formats;
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.async.listener;
+
+import com.example.async.service.SseConnectionRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.listener.ConsumerSeekAware;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ConnectionRegistryListener implements ConsumerSeekAware {
+    private final SseConnectionRegistry connectionRegistry;
+
+    @KafkaListener(topics = SseConnectionRegistry.REGISTRY_TOPIC,
+            groupId = "${spring.kafka.consumer.group-id}-registry",
+            containerFactory = "registryListenerContainerFactory")
+    public void listen(ConsumerRecord<String, String> record) {
+        connectionRegistry.applyOwnership(record.key(), record.value());
+    }
+
+    @Override
+    public void onPartitionsAssigned(Map<TopicPartition, Long> assignments, ConsumerSeekCallback callback) {
+        // 每次啟動都從頭讀取登記 topic，重建完整的連線歸屬表
+        log.info("從頭載入 SSE 連線歸屬登記，分區: {}", assignments.keySet());
+        callback.seekToBeginning(assignments.keySet());
+    }
+}
@@ -0,0 +1,175 @@
+package com.example.async.metrics;
+
+import com.example.async.journal.TaskEventJournal;
+import com.example.async.model.TaskEvent;
+import com.example.async.service.TaskEventPublisher;
+import com.example.async.sse.ConnectionTracker;
+import com.example.async.sse.HeartbeatSweeper;
+import com.example.async.sse.MuxSessionRegistry;
+import com.example.async.sse.SseConnectionLimits;
+import com.example.async.sse.SseReplayStore;
+import com.example.async.sse.SseWriterPool;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * SSE 連線與任務事件的 Micrometer 指標，經由 /actuator/prometheus 輸出。
+ * <p>
+ * 送達延遲以事件上的 publishedAt 計算；發布與送達可能在不同 pod，數值包含兩台機器的時鐘誤差。
+ * Kafka 消費延遲 (records-lag) 由 KafkaConfig 掛上的 MicrometerConsumerListener 提供。
+ */
+@Component
+public class TaskEventMetrics {
+    private final MeterRegistry registry;
+    private final Timer deliveryLatency;
+    private final Counter droppedEvents;
+    private final Counter misroutedEvents;
+    private final Counter failedSends;
+
+    public TaskEventMetrics(MeterRegistry registry, TaskEventPublisher publisher,
+                            HeartbeatSweeper heartbeatSweeper, SseReplayStore replayStore,
+                            MuxSessionRegistry muxSessions, SseWriterPool writerPool,
+                            TaskEventJournal journal, SseConnectionLimits connectionLimits) {
+        this.registry = registry;
+        this.deliveryLatency = Timer.builder("task.event.delivery.latency")
+                .description("事件從發布到寫入 SSE 連線的時間")
+                .publishPercentileHistogram()
+                .register(registry);
+        this.droppedEvents = Counter.builder("task.events.dropped")
+                .description("本 pod 與其他 pod 都沒有對應 SSE 連線而丟棄的事件數")
+                .register(registry);
+        this.misroutedEvents = Counter.builder("task.events.misrouted")
+                .description("送到本 pod 但連線由其他 pod 持有的事件數")
+                .register(registry);
+        this.failedSends = Counter.builder("sse.send.failures")
+                .description("寫入 SSE 連線失敗的事件數")
+                .register(registry);
+
+        Gauge.builder("sse.heartbeat.connections", heartbeatSweeper, HeartbeatSweeper::size)
+                .description("登記心跳的 SSE 連線數")
+                .register(registry);
+        Gauge.builder("sse.replay.buffers", replayStore, SseReplayStore::size)
+                .description("保留中的重播緩衝區數，包含等待重連的連線")
+                .register(registry);
+        Gauge.builder("sse.mux.sessions", muxSessions, MuxSessionRegistry::size)
+                .description("gateway 開啟的多工事件串流數")
+                .register(registry);
+
+        Gauge.builder("sse.connections.max", connectionLimits, SseConnectionLimits::getMaxConnections)
+                .description("本 pod 可接受的 SSE 連線數上限，0 表示不限制")
+                .register(registry);
+        FunctionCounter.builder("sse.connections.rejected", connectionLimits, SseConnectionLimits::getRejected)
+                .description("連線數已達上限而拒絕的訂閱數")
+                .register(registry);
+        FunctionCounter.builder("sse.connections.reaped", connectionLimits, SseConnectionLimits::getReapedIdle)
+                .description("回收的 SSE 連線數")
+                .tag("reason", "idle")
+                .register(registry);
+        FunctionCounter.builder("sse.connections.reaped", connectionLimits, SseConnectionLimits::getReapedExpired)
+                .description("回收的 SSE 連線數")
+                .tag("reason", "lifetime")
+                .register(registry);
+
+        Gauge.builder("task.journal.segments", journal, TaskEventJournal::segmentCount)
+                .description("任務事件日誌保留中的區段數")
+                .register(registry);
+        Gauge.builder("task.journal.bytes", journal, TaskEventJournal::sizeBytes)
+                .description("任務事件日誌已寫入的位元組數")
+                .register(registry);
+        Gauge.builder("task.journal.tasks", journal, TaskEventJournal::taskCount)
+                .description("任務事件日誌索引中的任務數")
+                .register(registry);
+
+        Gauge.builder("sse.outbound.queued", writerPool, SseWriterPool::getQueuedFrames)
+                .description("所有 SSE 連線待寫佇列中的框架數")
+                .register(registry);
+        FunctionCounter.builder("sse.outbound.dropped", writerPool, SseWriterPool::getDroppedFrames)
+                .description("待寫佇列已滿而丟棄的框架數 (溢出策略 drop)")
+                .register(registry);
+        FunctionCounter.builder("sse.outbound.coalesced", writerPool, SseWriterPool::getCoalescedFrames)
+                .description("待寫佇列已滿而合併寫出的框架數 (溢出策略 coalesce)")
+                .register(registry);
+        FunctionCounter.builder("sse.outbound.conflated", writerPool, SseWriterPool::getConflatedFrames)
+                .description("被同一任務較新的進度事件取代而未寫出的框架數")
+                .register(registry);
+        FunctionCounter.builder("sse.outbound.overflow.disconnects", writerPool, SseWriterPool::getOverflowDisconnects)
+                .description("待寫佇列已滿而結束的 SSE 連線數")
+                .register(registry);
+        FunctionCounter.builder("sse.outbound.write.timeouts", writerPool, SseWriterPool::getWriteTimeouts)
+                .description("寫入逾時而結束的 SSE 連線數")
+                .register(registry);
+        FunctionCounter.builder("sse.outbound.write.failures", writerPool, SseWriterPool::getWriteFailures)
+                .description("寫出執行緒寫入 SSE 連線失敗的次數")
+                .register(registry);
+        Gauge.builder("sse.outbound.stalled.writers", writerPool, SseWriterPool::getStalledWriters)
+                .description("寫入卡住、等待容器寫入逾時釋放的寫出執行緒數")
+                .register(registry);
+
+        Gauge.builder("task.events.publish.in.flight", publisher, p -> p.getStats().getInFlight())
+                .description("已送出但 Kafka 尚未確認的事件數")
+                .register(registry);
+        FunctionCounter.builder("task.events.published", publisher, p -> p.getStats().getSent())
+                .description("Kafka 已確認的事件數")
+                .register(registry);
+        FunctionCounter.builder("task.events.publish.failures", publisher, p -> p.getStats().getFailed())
+                .description("Kafka 傳送失敗的事件數")
+                .register(registry);
+        Gauge.builder("task.events.publish.queued", publisher, p -> p.getStats().getQueued())
+                .description("在傳送佇列中等待送出的事件數")
+                .register(registry);
+        FunctionCounter.builder("task.events.publish.rejected", publisher, p -> p.getStats().getRejected())
+                .description("傳送佇列已滿且等待逾時而放棄的事件數")
+                .register(registry);
+    }
+
+    /**
+     * 由持有連線映射的服務在初始化時呼叫；Gauge 只保留弱參照，映射必須由呼叫端持有。
+     */
+    public void bindConnections(Map<String, ?> connections, Map<String, ConnectionTracker> trackers,
+                                AtomicLong malformedCorrelationIds) {
+        Gauge.builder("sse.connections.active", connections, Map::size)
+                .description("本 pod 上開啟中的 SSE 連線數")
+                .register(registry);
+        Gauge.builder("sse.tasks.tracked", trackers, TaskEventMetrics::remainingTasks)
+                .description("所有 SSE 連線中追蹤且尚未完成的任務數")
+                .register(registry);
+        FunctionCounter.builder("task.events.malformed.correlation.id", malformedCorrelationIds, AtomicLong::get)
+                .description("無法解析出 SSE 連線 ID 的 correlationId 數")
+                .register(registry);
+    }
+
+    public void recordDelivered(TaskEvent event) {
+        Long publishedAt = event.getPublishedAt();
+        if (publishedAt != null) {
+            deliveryLatency.record(Math.max(0, System.currentTimeMillis() - publishedAt), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public void recordDropped(int count) {
+        droppedEvents.increment(count);
+    }
+
+    public void recordMisrouted(int count) {
+        misroutedEvents.increment(count);
+    }
+
+    public void recordFailedSend(int count) {
+        failedSends.increment(count);
+    }
+
+    private static double remainingTasks(Map<String, ConnectionTracker> trackers) {
+        long remaining = 0;
+        for (ConnectionTracker tracker : trackers.values()) {
+            remaining += tracker.getRemaining();
+        }
+        return remaining;
+    }
+}
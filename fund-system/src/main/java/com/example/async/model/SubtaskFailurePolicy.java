@@ -0,0 +1,6 @@
+package com.example.async.model;
+
+public enum SubtaskFailurePolicy {
+    FAIL_FAST,      // 任一子任務失敗即結束任務，尚未開始的子任務不再執行
+    COLLECT_ERRORS  // 所有子任務都執行完畢後，彙整失敗的子任務再決定最終狀態
+}
@@ -0,0 +1,45 @@
+package com.example.async.model;
+
+import lombok.Value;
+
+/**
+ * 單任務 ID 的結構化表示，格式為 {@code <SSE 連線 ID>-<任務索引>}，
+ * 例如 {@code abc-fund-3} 解析為連線 {@code abc-fund}、索引 3。
+ * <p>
+ * 只在發布端解析一次並寫入 TaskEvent 的欄位，消費端直接讀取欄位路由，不再逐筆跑正則表達式。
+ */
+@Value
+public class TaskCorrelationId {
+    String sseConnectionId;
+    // 最後一段不是數字時為 null
+    Integer taskIndex;
+
+    /**
+     * 以最後一個 '-' 切分單任務 ID，無法切分時回傳 null。
+     */
+    public static TaskCorrelationId parse(String singleTaskId) {
+        if (singleTaskId == null) {
+            return null;
+        }
+        int separator = singleTaskId.lastIndexOf('-');
+        if (separator <= 0 || separator == singleTaskId.length() - 1) {
+            return null;
+        }
+        return new TaskCorrelationId(singleTaskId.substring(0, separator), parseIndex(singleTaskId, separator + 1));
+    }
+
+    private static Integer parseIndex(String value, int from) {
+        if (value.length() - from > 9) {
+            return null;
+        }
+        int index = 0;
+        for (int i = from; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                return null;
+            }
+            index = index * 10 + (c - '0');
+        }
+        return index;
+    }
+}
@@ -15,4 +15,9 @@ public class TaskEvent {
     private String message;
     private Object result;
     private boolean finalEvent;
+    // 由 correlationId 在發布端解析一次 (見 TaskCorrelationId)，消費端直接以此路由
+    private String sseConnectionId;
+    private Integer taskIndex;
+    // 發布端送往 Kafka 前的時間 (epoch 毫秒)，消費端據此量測發布到送達 SSE 的延遲
+    private Long publishedAt;
 }
\ No newline at end of file
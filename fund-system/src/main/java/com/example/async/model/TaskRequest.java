@@ -11,6 +11,10 @@ public class TaskRequest {
     private String correlationId;
     private String taskName;
     private int numberOfSubtasks;
+    // 同時執行的子任務上限，0 或 1 表示依序執行 (伺服器端另有上限)
+    private int maxParallelSubtasks;
+    // 子任務失敗時的處理方式，未指定時為 FAIL_FAST
+    private SubtaskFailurePolicy failurePolicy;
 
     @Override
     public String toString() {
@@ -18,6 +22,8 @@ public class TaskRequest {
                 "correlationId='" + correlationId + '\'' +
                 ", taskName='" + taskName + '\'' +
                 ", numberOfSubtasks=" + numberOfSubtasks +
+                ", maxParallelSubtasks=" + maxParallelSubtasks +
+                ", failurePolicy=" + failurePolicy +
                 '}';
     }
 }
\ No newline at end of file
@@ -0,0 +1,211 @@
+package com.example.async.service;
+
+import com.example.async.model.TaskEvent;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 發布 TaskEvent 到 Kafka 的唯一出口。
+ * <p>
+ * publish 只把事件放入傳送佇列，由傳送執行緒交給 KafkaTemplate，呼叫端 (子任務引擎的執行緒) 不會因為
+ * producer 緩衝區已滿 (max.block.ms) 而被阻塞。事件依 key 分配到 sender-threads 條傳送執行緒之一，
+ * 同一 key (任務) 的事件依放入順序送出，不同 key 的傳送可以並行，producer 的湊批不受單一執行緒限制。
+ * 傳送執行緒以 semaphore 限制尚未確認的傳送數量，達到上限時事件留在佇列中等待。
+ * <p>
+ * 佇列合計最多 max-queued 個事件。佇列已滿時呼叫端最多等待 enqueue-timeout-ms，仍放不進去就放棄該事件並計入
+ * rejected，避免 Kafka 長時間不可用時卡住所有子任務執行緒。積壓應在任務入口處理：{@link #isSaturated()} 為 true 時
+ * 拒絕新任務，讓 producer 消化積壓，正常情況下執行中任務的事件 (包含最終事件) 不會走到放棄這一步。
+ * 關閉時先讓傳送執行緒送完佇列中的事件，再 flush producer 等待確認，合計最多 shutdown-timeout-ms。
+ */
+@Component
+@Slf4j
+public class TaskEventPublisher {
+    private final KafkaTemplate<String, TaskEvent> kafkaTemplate;
+    private final int maxInFlight;
+    private final Semaphore inFlight;
+    private final long enqueueTimeoutMillis;
+    private final long shutdownTimeoutMillis;
+    private final Sender[] senders;
+    private final AtomicInteger queued = new AtomicInteger();
+    private volatile boolean closed;
+
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder totalLatencyNanos = new LongAdder();
+    private final AtomicLong maxLatencyNanos = new AtomicLong();
+
+    public TaskEventPublisher(KafkaTemplate<String, TaskEvent> kafkaTemplate,
+                              @Value("${app.kafka.producer.max-in-flight:10000}") int maxInFlight,
+                              @Value("${app.kafka.producer.sender-threads:4}") int senderThreads,
+                              @Value("${app.kafka.producer.max-queued:10000}") int maxQueued,
+                              @Value("${app.kafka.producer.enqueue-timeout-ms:5000}") long enqueueTimeoutMillis,
+                              @Value("${app.kafka.producer.shutdown-timeout-ms:10000}") long shutdownTimeoutMillis) {
+        this.kafkaTemplate = kafkaTemplate;
+        this.maxInFlight = maxInFlight;
+        this.inFlight = new Semaphore(maxInFlight);
+        this.enqueueTimeoutMillis = enqueueTimeoutMillis;
+        this.shutdownTimeoutMillis = shutdownTimeoutMillis;
+        int threads = Math.max(1, senderThreads);
+        this.senders = new Sender[threads];
+        for (int i = 0; i < threads; i++) {
+            senders[i] = new Sender("kafka-event-sender-" + (i + 1), Math.max(1, maxQueued / threads));
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(shutdownTimeoutMillis);
+        closed = true;
+        try {
+            for (Sender sender : senders) {
+                sender.thread.join(Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())));
+            }
+            if (queued.get() > 0) {
+                log.warn("關閉逾時，仍有 {} 個事件尚未交給 Kafka", queued.get());
+            }
+            CompletableFuture.runAsync(kafkaTemplate::flush)
+                    .get(Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (TimeoutException e) {
+            log.warn("關閉逾時，仍有 {} 個事件等待 Kafka 確認", maxInFlight - inFlight.availablePermits());
+        } catch (ExecutionException e) {
+            log.warn("關閉時 flush Kafka producer 失敗", e.getCause());
+        } finally {
+            for (Sender sender : senders) {
+                sender.thread.interrupt();
+            }
+        }
+    }
+
+    /**
+     * 放入傳送佇列後返回；同一 key 的事件依放入順序送出。佇列已滿時最多等待 enqueue-timeout-ms，逾時則放棄該事件。
+     */
+    public void publish(String topic, String key, TaskEvent event) {
+        Sender sender = senders[Math.floorMod(key == null ? 0 : key.hashCode(), senders.length)];
+        queued.incrementAndGet();
+        try {
+            if (sender.queue.offer(new Pending(topic, key, event), enqueueTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        queued.decrementAndGet();
+        rejected.increment();
+        log.error("傳送佇列已滿，放棄發布到 Kafka topic {} 的事件: {}", topic, event);
+    }
+
+    private void send(Pending pending) {
+        long startNanos = System.nanoTime();
+        try {
+            kafkaTemplate.send(pending.topic, pending.key, pending.event).whenComplete((result, ex) -> {
+                inFlight.release();
+                recordLatency(System.nanoTime() - startNanos);
+                if (ex != null) {
+                    failed.increment();
+                    log.error("發布事件到 Kafka topic {} 失敗: {}", pending.topic, pending.event, ex);
+                } else {
+                    sent.increment();
+                }
+            });
+        } catch (RuntimeException e) {
+            // 例如 producer 緩衝區已滿且超過 max.block.ms
+            inFlight.release();
+            failed.increment();
+            log.error("發布事件到 Kafka topic {} 失敗: {}", pending.topic, pending.event, e);
+        }
+    }
+
+    // 尚未確認與等待傳送的事件合計達到上限
+    public boolean isSaturated() {
+        return maxInFlight - inFlight.availablePermits() + queued.get() >= maxInFlight;
+    }
+
+    public Stats getStats() {
+        long completed = sent.sum() + failed.sum();
+        return new Stats(maxInFlight - inFlight.availablePermits(), maxInFlight, sent.sum(), failed.sum(), queued.get(),
+                rejected.sum(), completed == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(totalLatencyNanos.sum() / completed),
+                TimeUnit.NANOSECONDS.toMicros(maxLatencyNanos.get()));
+    }
+
+    private void recordLatency(long nanos) {
+        totalLatencyNanos.add(nanos);
+        maxLatencyNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    /**
+     * 一條傳送執行緒與它的有界佇列。關閉後仍會送完佇列中剩餘的事件才結束。
+     */
+    private final class Sender implements Runnable {
+        private final BlockingQueue<Pending> queue;
+        private final Thread thread;
+
+        private Sender(String name, int capacity) {
+            this.queue = new ArrayBlockingQueue<>(capacity);
+            this.thread = new Thread(this, name);
+            this.thread.setDaemon(true);
+            this.thread.start();
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (!closed || !queue.isEmpty()) {
+                    Pending pending = queue.poll(100, TimeUnit.MILLISECONDS);
+                    if (pending == null) {
+                        continue;
+                    }
+                    queued.decrementAndGet();
+                    // 尚未確認的傳送達到上限時在這裡等待，只佔住這條傳送執行緒
+                    inFlight.acquire();
+                    send(pending);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static final class Pending {
+        private final String topic;
+        private final String key;
+        private final TaskEvent event;
+
+        private Pending(String topic, String key, TaskEvent event) {
+            this.topic = topic;
+            this.key = key;
+            this.event = event;
+        }
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class Stats {
+        private final int inFlight;
+        private final int maxInFlight;
+        private final long sent;
+        private final long failed;
+        private final long queued;
+        private final long rejected;
+        private final long avgLatencyMicros;
+        private final long maxLatencyMicros;
+    }
+}
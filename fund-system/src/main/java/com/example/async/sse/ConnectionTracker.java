@@ -0,0 +1,68 @@
+package com.example.async.sse;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 追蹤一條 SSE 連線所關注的任務是否全部完成。
+ * <p>
+ * 任務 ID 在建立時對應到固定的位元位置，完成狀態記錄在原子位元集合中，並以原子計數器記錄剩餘數量，
+ * 每個最終事件都是 O(1) 且執行緒安全；「全部完成」只會對其中一個呼叫回報一次。
+ */
+public class ConnectionTracker {
+    private final Map<String, Integer> slots;
+    private final AtomicLongArray completed;
+    private final AtomicInteger remaining;
+    private final AtomicBoolean allCompleted = new AtomicBoolean();
+
+    public ConnectionTracker(Collection<String> taskIds) {
+        Map<String, Integer> slots = new HashMap<>(taskIds.size() * 2);
+        for (String taskId : taskIds) {
+            slots.putIfAbsent(taskId, slots.size());
+        }
+        this.slots = slots;
+        this.completed = new AtomicLongArray((slots.size() + 63) >>> 6);
+        this.remaining = new AtomicInteger(slots.size());
+    }
+
+    public boolean isTracking(String taskId) {
+        return slots.containsKey(taskId);
+    }
+
+    /**
+     * 標記任務完成。只有讓剩餘數量歸零的那一次呼叫回傳 true；重複或不在追蹤清單內的任務不影響計數。
+     */
+    public boolean markCompleted(String taskId) {
+        Integer slot = slots.get(taskId);
+        if (slot == null || !setBit(slot)) {
+            return false;
+        }
+        return remaining.decrementAndGet() == 0 && allCompleted.compareAndSet(false, true);
+    }
+
+    public int getRemaining() {
+        return remaining.get();
+    }
+
+    public int getTrackedCount() {
+        return slots.size();
+    }
+
+    private boolean setBit(int slot) {
+        int word = slot >>> 6;
+        long mask = 1L << slot;
+        while (true) {
+            long current = completed.get(word);
+            if ((current & mask) != 0) {
+                return false;
+            }
+            if (completed.compareAndSet(word, current, current | mask)) {
+                return true;
+            }
+        }
+    }
+}
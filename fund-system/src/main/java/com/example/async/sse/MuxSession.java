@@ -0,0 +1,122 @@
+package com.example.async.sse;
+
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+/**
+ * gateway 與本 pod 之間的多工事件串流：經由同一個 gateway 的所有 SSE 連線共用一個 HTTP 回應。
+ * <p>
+ * 每個框架為一行 ASCII 標頭 {@code <類型> <通道 ID> <長度>\n} 加上長度位元組的內容，
+ * 類型 F 為該通道的 SSE 框架，C 表示該通道已結束；通道 ID 為 {@value #CONTROL_ID} 的空框架是開啟與保活訊號。
+ * 標頭與內容組成單一 byte[] 寫出，多條連線同時寫入時不會交錯。
+ */
+public class MuxSession {
+    public static final String CONTROL_ID = "-";
+    private static final Pattern CHANNEL_ID = Pattern.compile("[A-Za-z0-9_.:]{1,64}");
+    private static final byte[] EMPTY = new byte[0];
+    private static final PreEncodedSseEvent KEEPALIVE = new PreEncodedSseEvent(EMPTY);
+
+    private final String id;
+    private final ResponseBodyEmitter emitter = new ResponseBodyEmitter(Long.MAX_VALUE);
+    private final MuxedSseEmitter control;
+    private final SseConnection keepalive;
+    private final Map<String, MuxedSseEmitter> channels = new ConcurrentHashMap<>();
+    private final Consumer<MuxSession> onTerminate;
+    private volatile boolean closed;
+
+    MuxSession(String id, Consumer<MuxSession> onTerminate) {
+        this.id = id;
+        this.onTerminate = onTerminate;
+        this.control = new MuxedSseEmitter(this, CONTROL_ID);
+        this.keepalive = new SseConnection("mux:" + id, control, KEEPALIVE);
+        // gateway 斷線、逾時或保活失敗時，所有通道都隨之結束
+        emitter.onCompletion(() -> terminate(null));
+        emitter.onTimeout(() -> terminate(null));
+        emitter.onError(this::terminate);
+        control.onCompletion(() -> terminate(null));
+    }
+
+    public static boolean isValidChannelId(String channelId) {
+        return channelId != null && CHANNEL_ID.matcher(channelId).matches();
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public ResponseBodyEmitter getEmitter() {
+        return emitter;
+    }
+
+    // 登記到心跳掃描器的保活連線，送出控制通道的空框架
+    SseConnection getKeepalive() {
+        return keepalive;
+    }
+
+    public int getChannelCount() {
+        return channels.size();
+    }
+
+    /**
+     * 開啟一個通道；同一通道 ID 重複登記時舊通道直接結束。
+     */
+    MuxedSseEmitter open(String channelId) {
+        MuxedSseEmitter channel = new MuxedSseEmitter(this, channelId);
+        MuxedSseEmitter previous = channels.put(channelId, channel);
+        if (previous != null) {
+            previous.terminate(null);
+        }
+        return channel;
+    }
+
+    void close(String channelId) {
+        MuxedSseEmitter channel = channels.get(channelId);
+        if (channel != null) {
+            channel.complete();
+        }
+    }
+
+    void release(MuxedSseEmitter channel) {
+        channels.remove(channel.getChannelId(), channel);
+    }
+
+    void hello() throws IOException {
+        write('F', CONTROL_ID, EMPTY);
+    }
+
+    void write(char type, String channelId, byte[] payload) throws IOException {
+        if (closed) {
+            throw new IOException("多工串流 " + id + " 已關閉");
+        }
+        byte[] header = (type + " " + channelId + " " + payload.length + "\n").getBytes(StandardCharsets.US_ASCII);
+        byte[] frame = new byte[header.length + payload.length];
+        System.arraycopy(header, 0, frame, 0, header.length);
+        System.arraycopy(payload, 0, frame, header.length, payload.length);
+        emitter.send(frame, MediaType.APPLICATION_OCTET_STREAM);
+    }
+
+    void terminate(Throwable error) {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        for (MuxedSseEmitter channel : channels.values()) {
+            channel.terminate(error);
+        }
+        channels.clear();
+        control.terminate(null);
+        try {
+            emitter.complete();
+        } catch (IllegalStateException e) {
+            // 由 emitter 自身的完成或錯誤回調觸發時，回應已經結束
+        }
+        onTerminate.accept(this);
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.async.sse;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * gateway 開啟的多工事件串流 (見 {@link MuxSession})。
+ * <p>
+ * 每個 gateway 對本 pod 只開一條串流，客戶端的 SSE 連線以通道登記在串流上；通道不登記心跳，
+ * 心跳由 gateway 對客戶端發送，本 pod 只對串流本身以心跳掃描器定期送出保活框架。
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class MuxSessionRegistry {
+    private final HeartbeatSweeper heartbeatSweeper;
+    private final Map<String, MuxSession> sessions = new ConcurrentHashMap<>();
+
+    public ResponseBodyEmitter open(String muxId) {
+        MuxSession session = new MuxSession(muxId, this::onTerminate);
+        MuxSession previous = sessions.put(muxId, session);
+        if (previous != null) {
+            // gateway 重新開啟同一串流，舊串流上的通道已無法送達
+            previous.terminate(null);
+        }
+        try {
+            session.hello();
+        } catch (IOException e) {
+            session.terminate(e);
+            return session.getEmitter();
+        }
+        heartbeatSweeper.register(session.getKeepalive());
+        log.info("已開啟多工串流 {}，目前串流數: {}", muxId, sessions.size());
+        return session.getEmitter();
+    }
+
+    /**
+     * 在串流上開啟通道，串流不存在時回傳 null。
+     */
+    public MuxedSseEmitter openChannel(String muxId, String channelId) {
+        MuxSession session = sessions.get(muxId);
+        return session != null ? session.open(channelId) : null;
+    }
+
+    public void closeChannel(String muxId, String channelId) {
+        MuxSession session = sessions.get(muxId);
+        if (session != null) {
+            session.close(channelId);
+        }
+    }
+
+    private void onTerminate(MuxSession session) {
+        sessions.remove(session.getId(), session);
+        heartbeatSweeper.unregister(session.getKeepalive());
+        log.info("多工串流 {} 已結束", session.getId());
+    }
+
+    // 目前開啟的多工串流數
+    public int size() {
+        return sessions.size();
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.async.sse;
+
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * 多工串流中的一條 SSE 連線。對服務而言與一般的 SseEmitter 相同，但事件寫入所屬的 {@link MuxSession}，
+ * 結束時送出 C 框架，由 gateway 結束對應的客戶端連線。
+ * <p>
+ * 此 emitter 不會交給 Spring MVC 處理，完成與錯誤回調由本類別自行保存並觸發。
+ */
+public class MuxedSseEmitter extends SseEmitter {
+    private static final byte[] EMPTY = new byte[0];
+
+    private final MuxSession session;
+    private final String channelId;
+    private final AtomicBoolean done = new AtomicBoolean();
+    private volatile Runnable completionCallback;
+    private volatile Consumer<Throwable> errorCallback;
+
+    MuxedSseEmitter(MuxSession session, String channelId) {
+        super(Long.MAX_VALUE);
+        this.session = session;
+        this.channelId = channelId;
+    }
+
+    public String getChannelId() {
+        return channelId;
+    }
+
+    @Override
+    public void send(SseEventBuilder builder) throws IOException {
+        if (done.get()) {
+            throw new IllegalStateException("多工 SSE 通道 " + channelId + " 已結束");
+        }
+        session.write('F', channelId, PreEncodedSseEvent.toBytes(builder));
+    }
+
+    @Override
+    public void complete() {
+        if (done.compareAndSet(false, true)) {
+            try {
+                session.write('C', channelId, EMPTY);
+            } catch (IOException | IllegalStateException e) {
+                // 多工串流已中斷，gateway 會自行結束所有客戶端連線
+            }
+            session.release(this);
+            runCompletion();
+        }
+    }
+
+    @Override
+    public void completeWithError(Throwable ex) {
+        // 客戶端只需要知道連線已結束，重連時以 Last-Event-ID 補齊
+        complete();
+    }
+
+    @Override
+    public void onCompletion(Runnable callback) {
+        this.completionCallback = callback;
+    }
+
+    @Override
+    public void onError(Consumer<Throwable> callback) {
+        this.errorCallback = callback;
+    }
+
+    @Override
+    public void onTimeout(Runnable callback) {
+        // 通道沒有逾時，生命週期跟隨多工串流
+    }
+
+    /**
+     * 多工串流本身結束時呼叫，不再送出 C 框架。
+     */
+    void terminate(Throwable error) {
+        if (done.compareAndSet(false, true)) {
+            Consumer<Throwable> onError = errorCallback;
+            if (error != null && onError != null) {
+                onError.accept(error);
+            }
+            runCompletion();
+        }
+    }
+
+    private void runCompletion() {
+        Runnable callback = completionCallback;
+        if (callback != null) {
+            callback.run();
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.async.sse;
+
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 已預先編碼好的 SSE 事件框架。
+ * <p>
+ * 與 {@link SseEmitter#event()} 不同，build() 不會改變內部狀態，同一個實例可以重複發送，
+ * 而且整個框架只會以一次寫入送出。
+ */
+public final class PreEncodedSseEvent implements SseEmitter.SseEventBuilder {
+    private final byte[] frame;
+    private final Set<ResponseBodyEmitter.DataWithMediaType> data;
+
+    public PreEncodedSseEvent(byte[] frame) {
+        this.frame = frame;
+        this.data = Collections.singleton(new ResponseBodyEmitter.DataWithMediaType(frame, MediaType.TEXT_PLAIN));
+    }
+
+    /**
+     * 把同一條連線的多個框架串接成一次寫出，客戶端解析的結果與逐一發送相同。
+     */
+    public static PreEncodedSseEvent join(List<PreEncodedSseEvent> frames) {
+        if (frames.size() == 1) {
+            return frames.get(0);
+        }
+        int length = 0;
+        for (PreEncodedSseEvent frame : frames) {
+            length += frame.frame.length;
+        }
+        byte[] joined = new byte[length];
+        int offset = 0;
+        for (PreEncodedSseEvent frame : frames) {
+            System.arraycopy(frame.frame, 0, joined, offset, frame.frame.length);
+            offset += frame.frame.length;
+        }
+        return new PreEncodedSseEvent(joined);
+    }
+
+    /**
+     * 取得事件的原始位元組，供不經過 Spring MVC 寫出的 emitter 使用。
+     */
+    static byte[] toBytes(SseEmitter.SseEventBuilder builder) {
+        if (builder instanceof PreEncodedSseEvent) {
+            return ((PreEncodedSseEvent) builder).getFrame();
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+        for (ResponseBodyEmitter.DataWithMediaType part : builder.build()) {
+            Object data = part.getData();
+            byte[] bytes;
+            if (data instanceof byte[]) {
+                bytes = (byte[]) data;
+            } else if (data instanceof String) {
+                bytes = ((String) data).getBytes(StandardCharsets.UTF_8);
+            } else {
+                throw new IllegalArgumentException("只支援預先編碼的事件或文字資料");
+            }
+            out.write(bytes, 0, bytes.length);
+        }
+        return out.toByteArray();
+    }
+
+    public byte[] getFrame() {
+        return frame;
+    }
+
+    @Override
+    public Set<ResponseBodyEmitter.DataWithMediaType> build() {
+        return data;
+    }
+
+    @Override
+    public SseEmitter.SseEventBuilder comment(String comment) {
+        throw new UnsupportedOperationException("預先編碼的 SSE 事件不可修改");
+    }
+
+    @Override
+    public SseEmitter.SseEventBuilder name(String eventName) {
+        throw new UnsupportedOperationException("預先編碼的 SSE 事件不可修改");
+    }
+
+    @Override
+    public SseEmitter.SseEventBuilder id(String id) {
+        throw new UnsupportedOperationException("預先編碼的 SSE 事件不可修改");
+    }
+
+    @Override
+    public SseEmitter.SseEventBuilder reconnectTime(long reconnectTimeMillis) {
+        throw new UnsupportedOperationException("預先編碼的 SSE 事件不可修改");
+    }
+
+    @Override
+    public SseEmitter.SseEventBuilder data(Object object) {
+        throw new UnsupportedOperationException("預先編碼的 SSE 事件不可修改");
+    }
+
+    @Override
+    public SseEmitter.SseEventBuilder data(Object object, MediaType mediaType) {
+        throw new UnsupportedOperationException("預先編碼的 SSE 事件不可修改");
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.async.sse;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * 單一 SSE 連線：包裝 SseEmitter，並記錄最後一次實際寫出資料的時間，供心跳掃描判斷是否需要發送心跳。
+ * <p>
+ * 以 {@link SseWriterPool} 建立的連線只把框架放入自己的待寫佇列，由寫出執行緒寫入；
+ * 其餘 (WebFlux 連線、多工串流的保活) 在呼叫端執行緒上直接寫出。
+ */
+@Getter
+public class SseConnection {
+    private final String id;
+    private final SseEmitter emitter;
+    private final PreEncodedSseEvent heartbeatEvent;
+    @Getter(AccessLevel.NONE)
+    private final SseOutboundQueue outbound;
+    private final long createdNanos = System.nanoTime();
+    private volatile long lastActivityNanos = createdNanos;
+    // 最後一次推送任務事件的時間，不含心跳，供連線回收判斷客戶端是否還需要這條連線
+    private volatile long lastEventNanos = createdNanos;
+
+    public SseConnection(String id, SseEmitter emitter, PreEncodedSseEvent heartbeatEvent) {
+        this.id = id;
+        this.emitter = emitter;
+        this.heartbeatEvent = heartbeatEvent;
+        this.outbound = null;
+    }
+
+    /**
+     * 建立經由待寫佇列寫出的連線；佇列溢出斷線、寫入逾時或失敗時呼叫 onAbort。
+     */
+    public SseConnection(String id, SseEmitter emitter, PreEncodedSseEvent heartbeatEvent,
+                         SseWriterPool writerPool, Consumer<SseConnection> onAbort) {
+        this.id = id;
+        this.emitter = emitter;
+        this.heartbeatEvent = heartbeatEvent;
+        this.outbound = writerPool.newQueue(this, onAbort);
+    }
+
+    /**
+     * 寫出框架。經由待寫佇列時不會拋出 IOException，寫入失敗改由 onAbort 處理。
+     */
+    public void send(SseEmitter.SseEventBuilder event) throws IOException {
+        if (outbound != null) {
+            outbound.offer(PreEncodedSseEvent.toBytes(event), null);
+            return;
+        }
+        emitter.send(event);
+        lastActivityNanos = System.nanoTime();
+    }
+
+    /**
+     * 一次寫出同一連線的一組事件框架。conflationKeys 為各框架在待寫佇列中的合併鍵 (見 {@link SseWriterPool#conflationKey})，
+     * onWritten 為各框架實際寫出後的回調；被較新的進度事件取代而沒有寫出的框架不會呼叫回調。
+     */
+    public void sendAll(List<PreEncodedSseEvent> frames, List<String> conflationKeys, List<Runnable> onWritten)
+            throws IOException {
+        lastEventNanos = System.nanoTime();
+        if (outbound != null) {
+            List<byte[]> bytes = new ArrayList<>(frames.size());
+            for (PreEncodedSseEvent frame : frames) {
+                bytes.add(frame.getFrame());
+            }
+            outbound.offerAll(bytes, conflationKeys, onWritten);
+            return;
+        }
+        // 同一連線的事件串接成一個框架，只寫出並 flush 一次
+        emitter.send(PreEncodedSseEvent.join(frames));
+        lastActivityNanos = System.nanoTime();
+        for (Runnable callback : onWritten) {
+            callback.run();
+        }
+    }
+
+    public void sendHeartbeat() throws IOException {
+        if (outbound != null && outbound.isBusy()) {
+            // 還有框架等待寫出，心跳只會排在後面，不需要再放入
+            return;
+        }
+        send(heartbeatEvent);
+    }
+
+    /**
+     * 寫完已放入的框架後結束連線。
+     */
+    public void complete() {
+        if (outbound != null) {
+            outbound.close();
+        } else {
+            emitter.complete();
+        }
+    }
+
+    void write(byte[] frame) throws IOException {
+        emitter.send(new PreEncodedSseEvent(frame));
+        lastActivityNanos = System.nanoTime();
+    }
+
+    public boolean isIdleFor(long nanos, long nowNanos) {
+        return nowNanos - lastActivityNanos >= nanos;
+    }
+
+    public boolean hasNoEventsFor(long nanos, long nowNanos) {
+        return nowNanos - lastEventNanos >= nanos;
+    }
+
+    public boolean isOlderThan(long nanos, long nowNanos) {
+        return nowNanos - createdNanos >= nanos;
+    }
+}
@@ -0,0 +1,124 @@
+package com.example.async.sse;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 保存本 pod 各 SSE 連線的重播緩衝區。連線中斷後緩衝區仍保留一段時間，
+ * 期間收到的事件照樣寫入，讓客戶端重連時可以補齊。
+ * <p>
+ * 斷線後保留的緩衝區最多 max-detached 個，超過時依斷線先後淘汰最早斷線的緩衝區，
+ * 大量客戶端同時斷線時記憶體仍有上限；被淘汰的連線重連後只能收到之後的事件。
+ */
+@Component
+@Slf4j
+public class SseReplayStore {
+    private final int capacity;
+    private final long ttlNanos;
+    private final int maxDetached;
+    private final Map<String, SseReplayBuffer> buffers = new ConcurrentHashMap<>();
+    // 斷線中的緩衝區，依斷線先後排列；存取時以自身為鎖
+    private final LinkedHashMap<String, SseReplayBuffer> detached = new LinkedHashMap<>();
+    private final ScheduledExecutorService purger = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "sse-replay-purger");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public SseReplayStore(@Value("${app.sse.replay.capacity:256}") int capacity,
+                          @Value("${app.sse.replay.ttl-ms:300000}") long ttlMillis,
+                          @Value("${app.sse.replay.max-detached:10000}") int maxDetached) {
+        this.capacity = capacity;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        this.maxDetached = maxDetached;
+    }
+
+    @PostConstruct
+    public void start() {
+        long periodMillis = Math.max(1000, TimeUnit.NANOSECONDS.toMillis(ttlNanos) / 4);
+        purger.scheduleAtFixedRate(this::purgeExpired, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        purger.shutdownNow();
+    }
+
+    public SseReplayBuffer attach(String sseConnectionId) {
+        SseReplayBuffer buffer = buffers.computeIfAbsent(sseConnectionId, id -> new SseReplayBuffer(capacity, ttlNanos));
+        synchronized (detached) {
+            detached.remove(sseConnectionId);
+            buffer.setAttached(true);
+        }
+        return buffer;
+    }
+
+    /**
+     * 連線中斷，但保留緩衝區直到過期，以便客戶端重連；斷線中的緩衝區超過上限時淘汰最早斷線的。
+     */
+    public void detach(String sseConnectionId) {
+        SseReplayBuffer buffer = buffers.get(sseConnectionId);
+        if (buffer == null) {
+            return;
+        }
+        int evicted = 0;
+        synchronized (detached) {
+            buffer.setAttached(false);
+            detached.remove(sseConnectionId);
+            detached.put(sseConnectionId, buffer);
+            Iterator<Map.Entry<String, SseReplayBuffer>> eldest = detached.entrySet().iterator();
+            while (maxDetached > 0 && detached.size() > maxDetached) {
+                Map.Entry<String, SseReplayBuffer> entry = eldest.next();
+                buffers.remove(entry.getKey(), entry.getValue());
+                eldest.remove();
+                evicted++;
+            }
+        }
+        if (evicted > 0) {
+            log.debug("斷線中的 SSE 重播緩衝區超過上限 {}，淘汰最早斷線的 {} 個", maxDetached, evicted);
+        }
+    }
+
+    /**
+     * 連線已正常結束 (所有任務完成)，不再需要重播。
+     */
+    public void remove(String sseConnectionId) {
+        synchronized (detached) {
+            detached.remove(sseConnectionId);
+        }
+        buffers.remove(sseConnectionId);
+    }
+
+    // 目前保留的重播緩衝區數，包含斷線等待重連的連線
+    public int size() {
+        return buffers.size();
+    }
+
+    public SseReplayBuffer get(String sseConnectionId) {
+        return buffers.get(sseConnectionId);
+    }
+
+    private void purgeExpired() {
+        long now = System.nanoTime();
+        int before = buffers.size();
+        synchronized (detached) {
+            detached.values().removeIf(buffer -> buffer.isExpired(now));
+        }
+        buffers.values().removeIf(buffer -> buffer.isExpired(now));
+        int purged = before - buffers.size();
+        if (purged > 0) {
+            log.debug("已清除 {} 個過期的 SSE 重播緩衝區，剩餘: {}", purged, buffers.size());
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.async.kafka;
+
+import com.example.async.model.TaskEvent;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.kafka.common.errors.SerializationException;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TaskEventBinaryCodecTest {
+    private final TaskEventBinaryCodec codec = new TaskEventBinaryCodec(new ObjectMapper());
+
+    @Test
+    void roundTripsVersion1WithAllFields() {
+        TaskEvent event = TaskEvent.builder()
+                .correlationId("conn-1-3")
+                .sseConnectionId("conn-1")
+                .taskIndex(3)
+                .status("COMPLETED")
+                .message("第 3 個任務完成")
+                .result("ok")
+                .finalEvent(true)
+                .publishedAt(1700000000000L)
+                .build();
+
+        byte[] data = codec.encode(event);
+
+        assertTrue(TaskEventBinaryCodec.isBinary(data));
+        assertEquals(TaskEventBinaryCodec.VERSION, data[1]);
+        assertEquals(event, codec.decode(data));
+    }
+
+    @Test
+    void roundTripsVersion1WithCustomStatusAndExplicitCorrelationId() {
+        TaskEvent event = TaskEvent.builder()
+                .correlationId("task-42")
+                .status("RETRYING")
+                .result(Arrays.asList("a", "b"))
+                .build();
+
+        assertEquals(event, codec.decode(codec.encode(event)));
+    }
+
+    @Test
+    void decodesVersion2VarintFlags() {
+        TaskEvent event = TaskEvent.builder()
+                .correlationId("conn-2-0")
+                .sseConnectionId("conn-2")
+                .taskIndex(0)
+                .status("PROCESSING")
+                .message("處理中")
+                .publishedAt(1700000000123L)
+                .build();
+        byte[] v1 = codec.encode(event);
+        int flags = v1[2] & 0xFF;
+        // 含 publishedAt 時最高位元為 1，varint 需要兩個位元組
+        assertTrue(flags >= 0x80);
+
+        ByteArrayOutputStream v2 = new ByteArrayOutputStream();
+        v2.write(TaskEventBinaryCodec.MAGIC);
+        v2.write(TaskEventBinaryCodec.VERSION_VARINT_FLAGS);
+        v2.write((flags & 0x7F) | 0x80);
+        v2.write(flags >>> 7);
+        v2.write(v1, 3, v1.length - 3);
+
+        assertEquals(event, codec.decode(v2.toByteArray()));
+    }
+
+    @Test
+    void ignoresUnknownFlagBitsBeyondTheFirstByte() {
+        TaskEvent event = TaskEvent.builder()
+                .correlationId("task-7")
+                .status("FAILED")
+                .finalEvent(true)
+                .build();
+        byte[] v1 = codec.encode(event);
+        int flags = (v1[2] & 0xFF) | 1 << 9;
+
+        ByteArrayOutputStream v2 = new ByteArrayOutputStream();
+        v2.write(TaskEventBinaryCodec.MAGIC);
+        v2.write(TaskEventBinaryCodec.VERSION_VARINT_FLAGS);
+        v2.write((flags & 0x7F) | 0x80);
+        v2.write(flags >>> 7);
+        v2.write(v1, 3, v1.length - 3);
+
+        assertEquals(event, codec.decode(v2.toByteArray()));
+    }
+
+    @Test
+    void rejectsUnknownVersion() {
+        byte[] data = codec.encode(TaskEvent.builder().correlationId("task-1").status("COMPLETED").build());
+        data[1] = 3;
+
+        SerializationException e = assertThrows(SerializationException.class, () -> codec.decode(data));
+        assertTrue(e.getMessage().contains("版本"), e.getMessage());
+    }
+
+    @Test
+    void rejectsDataWithoutMagic() {
+        byte[] data = codec.encode(TaskEvent.builder().correlationId("task-1").status("COMPLETED").build());
+        data[0] = '{';
+
+        assertThrows(SerializationException.class, () -> codec.decode(data));
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.async.sse;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConnectionTrackerTest {
+
+    @Test
+    void reportsCompletionOnlyForTheLastTask() {
+        ConnectionTracker tracker = new ConnectionTracker(Arrays.asList("a", "b", "c"));
+
+        assertFalse(tracker.markCompleted("a"));
+        assertFalse(tracker.markCompleted("b"));
+        assertTrue(tracker.markCompleted("c"));
+        assertEquals(0, tracker.getRemaining());
+    }
+
+    @Test
+    void ignoresDuplicateAndUntrackedTasks() {
+        ConnectionTracker tracker = new ConnectionTracker(Arrays.asList("a", "a", "b"));
+
+        assertEquals(2, tracker.getTrackedCount());
+        assertFalse(tracker.markCompleted("a"));
+        assertFalse(tracker.markCompleted("a"));
+        assertFalse(tracker.markCompleted("x"));
+        assertEquals(1, tracker.getRemaining());
+        assertTrue(tracker.markCompleted("b"));
+        assertFalse(tracker.markCompleted("b"));
+    }
+
+    @Test
+    void tracksTasksAcrossMultipleWords() {
+        List<String> taskIds = new ArrayList<>();
+        for (int i = 0; i < 130; i++) {
+            taskIds.add("task-" + i);
+        }
+        ConnectionTracker tracker = new ConnectionTracker(taskIds);
+
+        for (int i = 0; i < 129; i++) {
+            assertFalse(tracker.markCompleted("task-" + i));
+        }
+        assertEquals(1, tracker.getRemaining());
+        assertTrue(tracker.markCompleted("task-129"));
+    }
+
+    @Test
+    void racingFinalsForTheSameTaskCompleteExactlyOnce() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            for (int round = 0; round < 2000; round++) {
+                ConnectionTracker tracker = new ConnectionTracker(Collections.singletonList("a"));
+                assertEquals(1, countCompletions(executor, tracker, "a", "a"), "round " + round);
+                assertEquals(0, tracker.getRemaining());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void racingFinalsForTheLastTwoTasksCompleteExactlyOnce() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            for (int round = 0; round < 2000; round++) {
+                ConnectionTracker tracker = new ConnectionTracker(Arrays.asList("a", "b"));
+                assertEquals(1, countCompletions(executor, tracker, "a", "b"), "round " + round);
+                assertEquals(0, tracker.getRemaining());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    // 兩條執行緒在同一時間點各標記一個任務，回傳回報「全部完成」的次數
+    private static int countCompletions(ExecutorService executor, ConnectionTracker tracker,
+                                        String first, String second) throws Exception {
+        CyclicBarrier barrier = new CyclicBarrier(2);
+        List<Callable<Boolean>> calls = Arrays.asList(
+                () -> {
+                    barrier.await();
+                    return tracker.markCompleted(first);
+                },
+                () -> {
+                    barrier.await();
+                    return tracker.markCompleted(second);
+                });
+        int completions = 0;
+        for (Future<Boolean> result : executor.invokeAll(calls)) {
+            if (result.get()) {
+                completions++;
+            }
+        }
+        return completions;
+    }
+}
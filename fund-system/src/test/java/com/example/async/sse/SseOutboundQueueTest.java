@@ -0,0 +1,209 @@
+package com.example.async.sse;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SseOutboundQueueTest {
+    private SseWriterPool pool;
+
+    @AfterEach
+    void stopPool() {
+        if (pool != null) {
+            pool.stop();
+        }
+    }
+
+    @Test
+    void dropDiscardsFramesThatDoNotFit() throws Exception {
+        pool = newPool("drop", 1024, false);
+        BlockingEmitter emitter = new BlockingEmitter();
+        SseOutboundQueue queue = newQueue(emitter, new CopyOnWriteArrayList<>());
+
+        fillBehindStalledWrite(queue, emitter);
+        offer(queue, "3", null);
+
+        assertEquals(1, pool.getDroppedFrames());
+        emitter.release.countDown();
+        queue.close();
+        assertEquals("012", emitter.awaitWritten(3));
+        assertTrue(emitter.finished.await(5, TimeUnit.SECONDS));
+        assertNull(emitter.error);
+    }
+
+    @Test
+    void dropWithConflationDisconnectsInsteadOfDroppingFinalEvents() throws Exception {
+        pool = newPool("drop", 1024, true);
+        BlockingEmitter emitter = new BlockingEmitter();
+        List<SseConnection> aborted = new CopyOnWriteArrayList<>();
+        SseOutboundQueue queue = newQueue(emitter, aborted);
+
+        offer(queue, "0", null);
+        assertTrue(emitter.entered.await(5, TimeUnit.SECONDS));
+        offer(queue, "1", "task-1");
+        offer(queue, "2", "task-2");
+        offer(queue, "3", "task-3");
+        assertEquals(1, pool.getDroppedFrames());
+        assertTrue(aborted.isEmpty());
+
+        offer(queue, "F", null);
+        assertEquals(1, pool.getOverflowDisconnects());
+        assertEquals(1, aborted.size());
+    }
+
+    @Test
+    void coalesceJoinsQueuedFramesIntoOneWrite() throws Exception {
+        pool = newPool("coalesce", 1024, false);
+        BlockingEmitter emitter = new BlockingEmitter();
+        SseOutboundQueue queue = newQueue(emitter, new CopyOnWriteArrayList<>());
+
+        fillBehindStalledWrite(queue, emitter);
+        offer(queue, "3", null);
+
+        assertEquals(2, pool.getCoalescedFrames());
+        assertEquals(0, pool.getDroppedFrames());
+        emitter.release.countDown();
+        assertEquals("0123", emitter.awaitWritten(4));
+    }
+
+    @Test
+    void coalesceDisconnectsPastTheByteLimit() throws Exception {
+        pool = newPool("coalesce", 2, false);
+        BlockingEmitter emitter = new BlockingEmitter();
+        List<SseConnection> aborted = new CopyOnWriteArrayList<>();
+        SseOutboundQueue queue = newQueue(emitter, aborted);
+
+        fillBehindStalledWrite(queue, emitter);
+        offer(queue, "3", null);
+
+        assertEquals(1, pool.getOverflowDisconnects());
+        assertEquals(1, aborted.size());
+    }
+
+    @Test
+    void disconnectAbortsAndDiscardsTheQueue() throws Exception {
+        pool = newPool("disconnect", 1024, false);
+        BlockingEmitter emitter = new BlockingEmitter();
+        List<SseConnection> aborted = new CopyOnWriteArrayList<>();
+        SseOutboundQueue queue = newQueue(emitter, aborted);
+
+        fillBehindStalledWrite(queue, emitter);
+        offer(queue, "3", null);
+
+        assertEquals(1, pool.getOverflowDisconnects());
+        assertEquals(1, aborted.size());
+        assertEquals("conn-1", aborted.get(0).getId());
+        assertEquals(0, pool.getQueuedFrames());
+
+        emitter.release.countDown();
+        assertTrue(emitter.finished.await(5, TimeUnit.SECONDS));
+        assertNotNull(emitter.error);
+        assertEquals("0", emitter.awaitWritten(1));
+    }
+
+    @Test
+    void conflationOverwritesThePendingProgressFrameInPlace() throws Exception {
+        pool = newPool("disconnect", 1024, true);
+        BlockingEmitter emitter = new BlockingEmitter();
+        SseOutboundQueue queue = newQueue(emitter, new CopyOnWriteArrayList<>());
+
+        offer(queue, "0", null);
+        assertTrue(emitter.entered.await(5, TimeUnit.SECONDS));
+        offer(queue, "a", "task-1");
+        offer(queue, "x", null);
+        offer(queue, "bb", "task-1");
+
+        assertEquals(1, pool.getConflatedFrames());
+        assertEquals(2, pool.getQueuedFrames());
+        emitter.release.countDown();
+        assertEquals("0bbx", emitter.awaitWritten(4));
+        assertEquals(0, pool.getQueuedFrames());
+    }
+
+    private SseWriterPool newPool(String overflowPolicy, int coalesceMaxBytes, boolean conflateProgress) {
+        return new SseWriterPool(1, 2, overflowPolicy, coalesceMaxBytes, 60000, conflateProgress, 0);
+    }
+
+    private SseOutboundQueue newQueue(BlockingEmitter emitter, List<SseConnection> aborted) {
+        SseConnection connection = new SseConnection("conn-1", emitter, new PreEncodedSseEvent(bytes(":\n\n")));
+        return new SseOutboundQueue(connection, pool, aborted::add);
+    }
+
+    // 第一個框架卡在寫入中，佇列 (容量 2) 再放滿兩個框架
+    private static void fillBehindStalledWrite(SseOutboundQueue queue, BlockingEmitter emitter) throws InterruptedException {
+        offer(queue, "0", null);
+        assertTrue(emitter.entered.await(5, TimeUnit.SECONDS));
+        offer(queue, "1", null);
+        offer(queue, "2", null);
+    }
+
+    private static void offer(SseOutboundQueue queue, String frame, String conflationKey) {
+        queue.offerAll(Collections.singletonList(bytes(frame)), Collections.singletonList(conflationKey),
+                Collections.singletonList(null));
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 第一次寫入會卡住直到 release，模擬 TCP 送出緩衝區已滿的客戶端。
+     */
+    private static final class BlockingEmitter extends SseEmitter {
+        private final CountDownLatch entered = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+        private final CountDownLatch finished = new CountDownLatch(1);
+        private final BlockingQueue<byte[]> written = new LinkedBlockingQueue<>();
+        private volatile Throwable error;
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            entered.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException(e);
+            }
+            written.add(((PreEncodedSseEvent) builder).getFrame());
+        }
+
+        @Override
+        public void complete() {
+            finished.countDown();
+        }
+
+        @Override
+        public void completeWithError(Throwable ex) {
+            error = ex;
+            finished.countDown();
+        }
+
+        private String awaitWritten(int length) throws InterruptedException {
+            StringBuilder text = new StringBuilder();
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (text.length() < length && System.nanoTime() < deadline) {
+                byte[] frame = written.poll(100, TimeUnit.MILLISECONDS);
+                if (frame != null) {
+                    text.append(new String(frame, StandardCharsets.UTF_8));
+                }
+            }
+            return text.toString();
+        }
+    }
+}